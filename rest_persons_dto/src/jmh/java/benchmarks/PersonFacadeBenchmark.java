@@ -0,0 +1,98 @@
+package benchmarks;
+
+import dto.PersonDTO;
+import dto.PersonsDTO;
+import exceptions.MissingInputException;
+import exceptions.PersonNotFoundException;
+import facades.PersonFacade;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.EMF_Creator;
+
+/**
+ * PersonFacade's reads and writes against the in-memory puMemory database,
+ * so what is measured is the facade, EclipseLink and JDBC, not the network
+ * or a database server. The numbers are only comparable between runs on the
+ * same machine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersonFacadeBenchmark {
+
+    private static final int PERSONS = 10000;
+
+    private EntityManagerFactory emf;
+    private PersonFacade facade;
+    private int[] ids;
+
+    @Setup
+    public void setUp() throws PersonNotFoundException {
+        emf = EMF_Creator.createEntityManagerFactoryInMemory();
+        facade = PersonFacade.getPersonFacade(emf);
+        List<PersonDTO> persons = new ArrayList<>();
+        for (int i = 0; i < PERSONS; i++) {
+            persons.add(new PersonDTO("First" + i, "Last" + i, String.valueOf(10000000 + i)));
+        }
+        ids = facade.addPersons(persons).getResults().stream().mapToInt(item -> item.getPerson().getId()).toArray();
+        //Read everyone once, so getPersonCached measures hits from the first iteration
+        for (int id : ids) {
+            facade.getPerson(id);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        emf.close();
+    }
+
+    private int randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    @Benchmark
+    public PersonDTO getPersonCached() throws PersonNotFoundException {
+        return facade.getPerson(randomId());
+    }
+
+    @Benchmark
+    public PersonDTO getPersonUncached() throws PersonNotFoundException {
+        facade.clearCache();
+        return facade.getPerson(randomId());
+    }
+
+    @Benchmark
+    public PersonsDTO getPersonsPage() {
+        return facade.getPersonsPage(randomId(), PersonFacade.DEFAULT_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public PersonDTO editPerson() throws PersonNotFoundException, MissingInputException {
+        int id = randomId();
+        return facade.editPerson(new PersonDTO(id, "First" + id, "Edited" + id, String.valueOf(10000000 + id)));
+    }
+
+    //Adds and deletes, so the table keeps its size however long the benchmark runs
+    @Benchmark
+    public PersonDTO addAndDeletePerson() throws MissingInputException, PersonNotFoundException {
+        PersonDTO added = facade.addPerson("New", "Person", "12345678");
+        return facade.deletePerson(added.getId());
+    }
+}
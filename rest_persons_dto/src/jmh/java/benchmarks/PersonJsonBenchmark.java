@@ -0,0 +1,86 @@
+package benchmarks;
+
+import dto.PersonBinaryCodec;
+import dto.PersonDTO;
+import dto.PersonsDTO;
+import facades.PersonFacade;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rest.GsonProvider;
+
+/**
+ * Writing and reading persons with the Gson instance GsonProvider uses for
+ * every JSON body, and with PersonBinaryCodec for comparison. The pages have
+ * PersonFacade.DEFAULT_PAGE_SIZE persons, like a page of /api/person/all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersonJsonBenchmark {
+
+    private PersonDTO person;
+    private String personJson;
+    private PersonsDTO page;
+    private String pageJson;
+    private byte[] pageBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        person = new PersonDTO(4217, "Kurt", "Hansen", "76847462");
+        personJson = GsonProvider.GSON.toJson(person);
+        List<PersonDTO> all = new ArrayList<>();
+        for (int i = 0; i < PersonFacade.DEFAULT_PAGE_SIZE; i++) {
+            all.add(new PersonDTO(i + 1, "First" + i, "Last" + i, String.valueOf(10000000 + i)));
+        }
+        page = new PersonsDTO();
+        page.setAll(all);
+        page.setNext(all.size());
+        pageJson = GsonProvider.GSON.toJson(page);
+        pageBytes = PersonBinaryCodec.toBytes(page);
+    }
+
+    @Benchmark
+    public String serializePerson() {
+        return GsonProvider.GSON.toJson(person);
+    }
+
+    @Benchmark
+    public PersonDTO deserializePerson() {
+        return GsonProvider.GSON.fromJson(personJson, PersonDTO.class);
+    }
+
+    @Benchmark
+    public String serializePage() {
+        return GsonProvider.GSON.toJson(page);
+    }
+
+    @Benchmark
+    public PersonsDTO deserializePage() {
+        return GsonProvider.GSON.fromJson(pageJson, PersonsDTO.class);
+    }
+
+    @Benchmark
+    public byte[] serializePageBinary() throws IOException {
+        return PersonBinaryCodec.toBytes(page);
+    }
+
+    @Benchmark
+    public PersonsDTO deserializePageBinary() throws IOException {
+        return PersonBinaryCodec.personsFromBytes(pageBytes);
+    }
+}
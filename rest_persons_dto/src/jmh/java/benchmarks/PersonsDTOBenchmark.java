@@ -0,0 +1,49 @@
+package benchmarks;
+
+import dto.PersonsDTO;
+import entities.Person;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mapping a result list of Person entities to a PersonsDTO, as the list
+ * endpoints did before they selected DTO's straight from the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersonsDTOBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int persons;
+
+    private List<Person> entities;
+
+    @Setup
+    public void setUp() {
+        entities = new ArrayList<>();
+        for (int i = 0; i < persons; i++) {
+            entities.add(new Person("First" + i, "Last" + i, String.valueOf(10000000 + i)));
+        }
+    }
+
+    @Benchmark
+    public PersonsDTO fromEntities() {
+        return new PersonsDTO(entities);
+    }
+}
@@ -0,0 +1,51 @@
+package dto;
+
+
+public class AdmissionStatsDTO {
+
+    private boolean enabled;
+    private LimiterStatsDTO reads;
+    private LimiterStatsDTO writes;
+    private int rateLimitPerSecond;
+    private int rateLimitBurst;
+    private int rateLimitClients;
+    private long rateLimited;
+
+    public AdmissionStatsDTO(boolean enabled, LimiterStatsDTO reads, LimiterStatsDTO writes, int rateLimitPerSecond, int rateLimitBurst, int rateLimitClients, long rateLimited) {
+        this.enabled = enabled;
+        this.reads = reads;
+        this.writes = writes;
+        this.rateLimitPerSecond = rateLimitPerSecond;
+        this.rateLimitBurst = rateLimitBurst;
+        this.rateLimitClients = rateLimitClients;
+        this.rateLimited = rateLimited;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public LimiterStatsDTO getReads() {
+        return reads;
+    }
+
+    public LimiterStatsDTO getWrites() {
+        return writes;
+    }
+
+    public int getRateLimitPerSecond() {
+        return rateLimitPerSecond;
+    }
+
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public int getRateLimitClients() {
+        return rateLimitClients;
+    }
+
+    public long getRateLimited() {
+        return rateLimited;
+    }
+}
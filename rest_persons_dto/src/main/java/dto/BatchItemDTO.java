@@ -0,0 +1,39 @@
+package dto;
+
+
+public class BatchItemDTO {
+
+    private int index;
+    private int status;
+    private PersonDTO person;
+    private String message;
+
+    public BatchItemDTO(int index, PersonDTO person) {
+        this.index = index;
+        this.status = 201;
+        this.person = person;
+    }
+
+    public BatchItemDTO(int index, int status, String message) {
+        this.index = index;
+        this.status = status;
+        this.message = message;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public PersonDTO getPerson() {
+        return person;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+}
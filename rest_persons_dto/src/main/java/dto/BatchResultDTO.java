@@ -0,0 +1,34 @@
+package dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class BatchResultDTO {
+
+    private int created;
+    private int failed;
+    private List<BatchItemDTO> results = new ArrayList<>();
+
+    public void add(BatchItemDTO item) {
+        results.add(item);
+        if (item.getPerson() != null) {
+            created++;
+        } else {
+            failed++;
+        }
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public List<BatchItemDTO> getResults() {
+        return results;
+    }
+
+}
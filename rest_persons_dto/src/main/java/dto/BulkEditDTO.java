@@ -0,0 +1,56 @@
+package dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class BulkEditDTO {
+
+    private List<Integer> ids = new ArrayList<>();
+    private String fName;
+    private String lName;
+    private String phone;
+
+    public BulkEditDTO() {
+    }
+
+    public BulkEditDTO(List<Integer> ids, String fName, String lName, String phone) {
+        this.ids = ids;
+        this.fName = fName;
+        this.lName = lName;
+        this.phone = phone;
+    }
+
+    public List<Integer> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Integer> ids) {
+        this.ids = ids;
+    }
+
+    public String getfName() {
+        return fName;
+    }
+
+    public void setfName(String fName) {
+        this.fName = fName;
+    }
+
+    public String getlName() {
+        return lName;
+    }
+
+    public void setlName(String lName) {
+        this.lName = lName;
+    }
+
+    public String getPhone() {
+        return phone;
+    }
+
+    public void setPhone(String phone) {
+        this.phone = phone;
+    }
+
+}
@@ -0,0 +1,20 @@
+package dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class BulkResultDTO {
+
+    private List<Integer> affected = new ArrayList<>();
+    private List<Integer> notFound = new ArrayList<>();
+
+    public List<Integer> getAffected() {
+        return affected;
+    }
+
+    public List<Integer> getNotFound() {
+        return notFound;
+    }
+
+}
@@ -0,0 +1,61 @@
+package dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class ChangesDTO {
+
+    List<PersonDTO> changed = new ArrayList<>();
+    List<Integer> deleted = new ArrayList<>();
+    String next;
+    boolean more;
+
+    public ChangesDTO() {
+    }
+
+    /**
+     * @return the persons added or changed, as they are now
+     */
+    public List<PersonDTO> getChanged() {
+        return changed;
+    }
+
+    public void setChanged(List<PersonDTO> changed) {
+        this.changed = changed;
+    }
+
+    /**
+     * @return the ids of the persons deleted
+     */
+    public List<Integer> getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(List<Integer> deleted) {
+        this.deleted = deleted;
+    }
+
+    /**
+     * @return the token to pass as "since" to get the changes after these
+     */
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+
+    /**
+     * @return true if there were more changes than fit in this page, ask
+     * again with next right away
+     */
+    public boolean isMore() {
+        return more;
+    }
+
+    public void setMore(boolean more) {
+        this.more = more;
+    }
+}
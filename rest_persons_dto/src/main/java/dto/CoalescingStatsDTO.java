@@ -0,0 +1,33 @@
+package dto;
+
+
+public class CoalescingStatsDTO {
+
+    private int inFlight;
+    private long loads;
+    private long coalesced;
+    private long timeouts;
+
+    public CoalescingStatsDTO(int inFlight, long loads, long coalesced, long timeouts) {
+        this.inFlight = inFlight;
+        this.loads = loads;
+        this.coalesced = coalesced;
+        this.timeouts = timeouts;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public long getLoads() {
+        return loads;
+    }
+
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+}
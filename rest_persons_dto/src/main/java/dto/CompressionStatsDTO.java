@@ -0,0 +1,59 @@
+package dto;
+
+
+public class CompressionStatsDTO {
+
+    private int minBytes;
+    private long compressed;
+    private long uncompressed;
+    private long bytesBefore;
+    private long bytesAfter;
+    private int cacheSize;
+    private long cacheHits;
+    private long cacheMisses;
+
+    public CompressionStatsDTO(int minBytes, long compressed, long uncompressed, long bytesBefore, long bytesAfter,
+            int cacheSize, long cacheHits, long cacheMisses) {
+        this.minBytes = minBytes;
+        this.compressed = compressed;
+        this.uncompressed = uncompressed;
+        this.bytesBefore = bytesBefore;
+        this.bytesAfter = bytesAfter;
+        this.cacheSize = cacheSize;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+    }
+
+    public int getMinBytes() {
+        return minBytes;
+    }
+
+    public long getCompressed() {
+        return compressed;
+    }
+
+    public long getUncompressed() {
+        return uncompressed;
+    }
+
+    public long getBytesBefore() {
+        return bytesBefore;
+    }
+
+    public long getBytesAfter() {
+        return bytesAfter;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+}
@@ -0,0 +1,52 @@
+package dto;
+
+
+public class ExecutorStatsDTO {
+
+    private boolean virtualThreads;
+    private int maxActive;
+    private int maxQueued;
+    private int active;
+    private int queued;
+    private long completed;
+    private long rejected;
+
+    public ExecutorStatsDTO(boolean virtualThreads, int maxActive, int maxQueued, int active, int queued, long completed, long rejected) {
+        this.virtualThreads = virtualThreads;
+        this.maxActive = maxActive;
+        this.maxQueued = maxQueued;
+        this.active = active;
+        this.queued = queued;
+        this.completed = completed;
+        this.rejected = rejected;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+}
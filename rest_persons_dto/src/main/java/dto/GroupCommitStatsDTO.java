@@ -0,0 +1,66 @@
+package dto;
+
+
+public class GroupCommitStatsDTO {
+
+    private boolean enabled;
+    private int batchSize;
+    private long lingerMillis;
+    private int queued;
+    private long commits;
+    private long persons;
+    private int largestBatch;
+    private long retries;
+    private long overflows;
+
+    public GroupCommitStatsDTO() {
+    }
+
+    public GroupCommitStatsDTO(boolean enabled, int batchSize, long lingerMillis, int queued, long commits, long persons, int largestBatch, long retries, long overflows) {
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.queued = queued;
+        this.commits = commits;
+        this.persons = persons;
+        this.largestBatch = largestBatch;
+        this.retries = retries;
+        this.overflows = overflows;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getLingerMillis() {
+        return lingerMillis;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getCommits() {
+        return commits;
+    }
+
+    public long getPersons() {
+        return persons;
+    }
+
+    public int getLargestBatch() {
+        return largestBatch;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    public long getOverflows() {
+        return overflows;
+    }
+}
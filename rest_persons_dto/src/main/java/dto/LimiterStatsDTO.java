@@ -0,0 +1,57 @@
+package dto;
+
+
+public class LimiterStatsDTO {
+
+    private String name;
+    private int limit;
+    private int minLimit;
+    private int maxLimit;
+    private int inFlight;
+    private long accepted;
+    private long rejected;
+    private long decreases;
+
+    public LimiterStatsDTO(String name, int limit, int minLimit, int maxLimit, int inFlight, long accepted, long rejected, long decreases) {
+        this.name = name;
+        this.limit = limit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.inFlight = inFlight;
+        this.accepted = accepted;
+        this.rejected = rejected;
+        this.decreases = decreases;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getDecreases() {
+        return decreases;
+    }
+}
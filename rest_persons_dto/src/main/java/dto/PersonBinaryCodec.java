@@ -0,0 +1,217 @@
+package dto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes PersonDTO and PersonsDTO in a compact binary format, the
+ * application/x-person-binary media type of PersonResource. It only needs
+ * the JDK and the two DTO classes, so clients can copy it as it is.
+ *
+ * Format, version 1:
+ * <pre>
+ * body     = version:byte(1) kind:byte ('P' person | 'L' list) (person | list)
+ * person   = flags:byte [id:varint] [fName:string] [lName:string] [phone:string]
+ *            flags bit 0..3 tell which of id, fName, lName, phone follow
+ * list     = flags:byte count:varint person* [next:varint]
+ *            flags bit 0 tells if next follows
+ * string   = length:varint UTF-8 bytes, at most MAX_STRING_BYTES
+ * varint   = unsigned LEB128, 7 bits per byte, low bits first
+ * </pre>
+ * Version and lastEdited are not part of the body, just like in the JSON.
+ */
+public class PersonBinaryCodec {
+
+    public static final String MEDIA_TYPE = "application/x-person-binary";
+    public static final int VERSION = 1;
+    //The columns hold 255 characters, that is at most 1020 bytes of UTF-8
+    public static final int MAX_STRING_BYTES = 1024;
+
+    private static final int KIND_PERSON = 'P';
+    private static final int KIND_LIST = 'L';
+
+    private static final int HAS_ID = 1;
+    private static final int HAS_FNAME = 2;
+    private static final int HAS_LNAME = 4;
+    private static final int HAS_PHONE = 8;
+    private static final int HAS_NEXT = 1;
+
+    private PersonBinaryCodec() {
+    }
+
+    public static void write(PersonDTO p, OutputStream out) throws IOException {
+        writeHeader(out, KIND_PERSON);
+        writePerson(p, out);
+    }
+
+    public static void write(PersonsDTO ps, OutputStream out) throws IOException {
+        writeHeader(out, KIND_LIST);
+        out.write(ps.getNext() != null ? HAS_NEXT : 0);
+        writeVarint(ps.size(), out);
+        for (PersonDTO p : ps.getAll()) {
+            writePerson(p, out);
+        }
+        if (ps.getNext() != null) {
+            writeVarint(ps.getNext(), out);
+        }
+    }
+
+    public static PersonDTO readPerson(InputStream in) throws IOException {
+        readHeader(in, KIND_PERSON);
+        return readPersonBody(in);
+    }
+
+    public static PersonsDTO readPersons(InputStream in) throws IOException {
+        readHeader(in, KIND_LIST);
+        int flags = readByte(in);
+        int count = readVarint(in);
+        //A 5 byte varint can be negative
+        if (count < 0) {
+            throw new IOException("Person count " + count + " is negative");
+        }
+        //Grow as we read, so a bad count can not make us allocate a huge list up front
+        List<PersonDTO> all = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            all.add(readPersonBody(in));
+        }
+        PersonsDTO ps = new PersonsDTO();
+        ps.setAll(all);
+        if ((flags & HAS_NEXT) != 0) {
+            ps.setNext(readVarint(in));
+        }
+        return ps;
+    }
+
+    public static byte[] toBytes(PersonDTO p) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(p, out);
+        return out.toByteArray();
+    }
+
+    public static byte[] toBytes(PersonsDTO ps) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(ps, out);
+        return out.toByteArray();
+    }
+
+    public static PersonDTO personFromBytes(byte[] bytes) throws IOException {
+        return readPerson(new ByteArrayInputStream(bytes));
+    }
+
+    public static PersonsDTO personsFromBytes(byte[] bytes) throws IOException {
+        return readPersons(new ByteArrayInputStream(bytes));
+    }
+
+    private static void writeHeader(OutputStream out, int kind) throws IOException {
+        out.write(VERSION);
+        out.write(kind);
+    }
+
+    private static void readHeader(InputStream in, int kind) throws IOException {
+        int version = readByte(in);
+        if (version != VERSION) {
+            throw new IOException("Unsupported person-binary version " + version);
+        }
+        int actual = readByte(in);
+        if (actual != kind) {
+            throw new IOException("Expected a '" + (char) kind + "' body, got '" + (char) actual + "'");
+        }
+    }
+
+    private static void writePerson(PersonDTO p, OutputStream out) throws IOException {
+        int flags = (p.getId() != null ? HAS_ID : 0)
+                | (p.getfName() != null ? HAS_FNAME : 0)
+                | (p.getlName() != null ? HAS_LNAME : 0)
+                | (p.getPhone() != null ? HAS_PHONE : 0);
+        out.write(flags);
+        if (p.getId() != null) {
+            writeVarint(p.getId(), out);
+        }
+        if (p.getfName() != null) {
+            writeString(p.getfName(), out);
+        }
+        if (p.getlName() != null) {
+            writeString(p.getlName(), out);
+        }
+        if (p.getPhone() != null) {
+            writeString(p.getPhone(), out);
+        }
+    }
+
+    private static PersonDTO readPersonBody(InputStream in) throws IOException {
+        int flags = readByte(in);
+        PersonDTO p = new PersonDTO();
+        if ((flags & HAS_ID) != 0) {
+            p.setId(readVarint(in));
+        }
+        if ((flags & HAS_FNAME) != 0) {
+            p.setfName(readString(in));
+        }
+        if ((flags & HAS_LNAME) != 0) {
+            p.setlName(readString(in));
+        }
+        if ((flags & HAS_PHONE) != 0) {
+            p.setPhone(readString(in));
+        }
+        return p;
+    }
+
+    private static void writeString(String s, OutputStream out) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length, out);
+        out.write(bytes);
+    }
+
+    private static String readString(InputStream in) throws IOException {
+        int length = readVarint(in);
+        //Checked before allocating, the length comes from the client
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("String length " + length + " is not within 0.." + MAX_STRING_BYTES);
+        }
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(bytes, read, length - read);
+            if (n < 0) {
+                throw new EOFException("Body ended inside a string");
+            }
+            read += n;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarint(int value, OutputStream out) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte(in);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint is longer than 5 bytes");
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Body ended too early");
+        }
+        return b;
+    }
+}
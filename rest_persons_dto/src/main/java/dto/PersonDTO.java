@@ -1,6 +1,7 @@
 package dto;
 
 import entities.Person;
+import java.util.Date;
 
 
 public class PersonDTO {
@@ -9,6 +10,9 @@ public class PersonDTO {
     private String fName;
     private String lName;
     private String phone;
+    //transient: not part of the JSON, sent as the ETag and Last-Modified headers
+    private transient Integer version;
+    private transient Date lastEdited;
 
     public PersonDTO() {
     }
@@ -18,6 +22,22 @@ public class PersonDTO {
         this.fName = p.getFirstName();
         this.lName = p.getLastName();
         this.phone = p.getPhone();
+        this.version = p.getVersion();
+        this.lastEdited = p.getLastEdited();
+    }
+
+    public PersonDTO(Integer id, String fName, String lName, String phone) {
+        this.id = id;
+        this.fName = fName;
+        this.lName = lName;
+        this.phone = phone;
+    }
+
+    //Used by the "SELECT NEW dto.PersonDTO(...)" queries in PersonFacade
+    public PersonDTO(Integer id, String fName, String lName, String phone, Integer version, Date lastEdited) {
+        this(id, fName, lName, phone);
+        this.version = version;
+        this.lastEdited = lastEdited;
     }
 
     public PersonDTO(String fName, String lName, String phone) {
@@ -57,6 +77,14 @@ public class PersonDTO {
     public void setPhone(String phone) {
         this.phone = phone;
     }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public Date getLastEdited() {
+        return lastEdited;
+    }
     
     
 }
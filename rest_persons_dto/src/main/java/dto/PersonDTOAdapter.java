@@ -0,0 +1,72 @@
+package dto;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+
+/**
+ * Writes and reads a PersonDTO field by field, instead of letting Gson find
+ * the fields by reflection. The JSON is the same as Gson's own: null fields
+ * are left out, and version and lastEdited are not part of it.
+ */
+public class PersonDTOAdapter extends TypeAdapter<PersonDTO> {
+
+    @Override
+    public void write(JsonWriter out, PersonDTO p) throws IOException {
+        if (p == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (p.getId() != null) {
+            out.name("id").value(p.getId());
+        }
+        if (p.getfName() != null) {
+            out.name("fName").value(p.getfName());
+        }
+        if (p.getlName() != null) {
+            out.name("lName").value(p.getlName());
+        }
+        if (p.getPhone() != null) {
+            out.name("phone").value(p.getPhone());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public PersonDTO read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        PersonDTO p = new PersonDTO();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    p.setId(in.nextInt());
+                    break;
+                case "fName":
+                    p.setfName(in.nextString());
+                    break;
+                case "lName":
+                    p.setlName(in.nextString());
+                    break;
+                case "phone":
+                    p.setPhone(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return p;
+    }
+}
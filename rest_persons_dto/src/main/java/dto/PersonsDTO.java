@@ -8,7 +8,11 @@ import java.util.List;
 public class PersonsDTO {
     
     List<PersonDTO> all = new ArrayList();
+    Integer next;
     
+    public PersonsDTO() {
+    }
+
     public PersonsDTO (List<Person> personEntities) {
         personEntities.forEach((p) -> {
             all.add(new PersonDTO(p));
@@ -22,5 +26,22 @@ public class PersonsDTO {
     public List<PersonDTO> getAll() {
         return all;
     }
+
+    public void setAll(List<PersonDTO> all) {
+        this.all = all;
+    }
+
+    /**
+     * @return where the next page starts, or null if this was the last
+     * page. For the pages of all persons it is the id to pass as "after".
+     * For search results it is the number of persons to pass as "offset".
+     */
+    public Integer getNext() {
+        return next;
+    }
+
+    public void setNext(Integer next) {
+        this.next = next;
+    }
     
 }
@@ -0,0 +1,71 @@
+package dto;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes and reads a PersonsDTO as {"all":[...],"next":id}, next is left out
+ * on the last page.
+ */
+public class PersonsDTOAdapter extends TypeAdapter<PersonsDTO> {
+
+    private final PersonDTOAdapter personAdapter = new PersonDTOAdapter();
+
+    @Override
+    public void write(JsonWriter out, PersonsDTO ps) throws IOException {
+        if (ps == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("all").beginArray();
+        for (PersonDTO p : ps.getAll()) {
+            personAdapter.write(out, p);
+        }
+        out.endArray();
+        if (ps.getNext() != null) {
+            out.name("next").value(ps.getNext());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public PersonsDTO read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        PersonsDTO ps = new PersonsDTO();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "all":
+                    List<PersonDTO> all = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        all.add(personAdapter.read(in));
+                    }
+                    in.endArray();
+                    ps.setAll(all);
+                    break;
+                case "next":
+                    ps.setNext(in.nextInt());
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return ps;
+    }
+}
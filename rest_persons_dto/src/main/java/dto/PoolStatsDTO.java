@@ -0,0 +1,74 @@
+package dto;
+
+
+public class PoolStatsDTO {
+
+    private boolean pooled;
+    private int maxSize;
+    private int active;
+    private int idle;
+    private int pending;
+    private int total;
+    private long acquired;
+    private double acquireMillisAvg;
+    private double acquireMillisMax;
+    private long timeouts;
+
+    public PoolStatsDTO() {
+    }
+
+    public PoolStatsDTO(int maxSize, int active, int idle, int pending, int total,
+            long acquired, double acquireMillisAvg, double acquireMillisMax, long timeouts) {
+        this.pooled = true;
+        this.maxSize = maxSize;
+        this.active = active;
+        this.idle = idle;
+        this.pending = pending;
+        this.total = total;
+        this.acquired = acquired;
+        this.acquireMillisAvg = acquireMillisAvg;
+        this.acquireMillisMax = acquireMillisMax;
+        this.timeouts = timeouts;
+    }
+
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public long getAcquired() {
+        return acquired;
+    }
+
+    public double getAcquireMillisAvg() {
+        return acquireMillisAvg;
+    }
+
+    public double getAcquireMillisMax() {
+        return acquireMillisMax;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+}
@@ -0,0 +1,28 @@
+package dto;
+
+
+public class ReadinessDTO {
+
+    private boolean ready;
+    private long deployMillis;
+    private long warmupMillis;
+
+    public ReadinessDTO(boolean ready, long deployMillis, long warmupMillis) {
+        this.ready = ready;
+        this.deployMillis = deployMillis;
+        this.warmupMillis = warmupMillis;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long getDeployMillis() {
+        return deployMillis;
+    }
+
+    public long getWarmupMillis() {
+        return warmupMillis;
+    }
+
+}
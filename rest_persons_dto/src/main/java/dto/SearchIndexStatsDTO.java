@@ -0,0 +1,46 @@
+package dto;
+
+
+public class SearchIndexStatsDTO {
+
+    private int persons;
+    private int grams;
+    private long postings;
+    private long estimatedBytes;
+    private long bytesPerPerson;
+    private long buildMillis;
+
+    public SearchIndexStatsDTO(int persons, int grams, long postings, long estimatedBytes, long buildMillis) {
+        this.persons = persons;
+        this.grams = grams;
+        this.postings = postings;
+        this.estimatedBytes = estimatedBytes;
+        this.bytesPerPerson = persons == 0 ? 0 : estimatedBytes / persons;
+        this.buildMillis = buildMillis;
+    }
+
+    public int getPersons() {
+        return persons;
+    }
+
+    public int getGrams() {
+        return grams;
+    }
+
+    public long getPostings() {
+        return postings;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    public long getBytesPerPerson() {
+        return bytesPerPerson;
+    }
+
+    public long getBuildMillis() {
+        return buildMillis;
+    }
+
+}
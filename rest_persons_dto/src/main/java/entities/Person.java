@@ -6,29 +6,80 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+import javax.persistence.TableGenerator;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
-
-
+import javax.persistence.Version;
+
+
+/*
+ * The facade's fixed queries are named queries, so EclipseLink parses them
+ * once and the warm-up (PersonFacade.warmUp, run by rest.StartupListener)
+ * can prepare them before the first request. The DTO queries use a constructor expression that selects only
+ * the columns PersonDTO needs, so no Person entities are built, change
+ * tracked or put in the persistence context and shared cache. Single
+ * persons are read with em.find instead, which the shared cache can answer
+ * without a round trip.
+ */
 @Entity
-@NamedQuery(name = "Person.deleteAllRows", query = "DELETE from Person")
+@NamedQueries({
+    @NamedQuery(name = "Person.deleteAllRows", query = "DELETE from Person"),
+    @NamedQuery(name = "Person.count", query = "SELECT COUNT(p) FROM Person p"),
+    @NamedQuery(name = "Person.maxId", query = "SELECT MAX(p.id) FROM Person p"),
+    @NamedQuery(name = "Person.countById", query = "SELECT COUNT(p) FROM Person p WHERE p.id = :id"),
+    @NamedQuery(name = "Person.dtoByIds", query = "SELECT NEW dto.PersonDTO(p.id, p.firstName, p.lastName, p.phone, p.version, p.lastEdited) FROM Person p WHERE p.id IN :ids"),
+    @NamedQuery(name = "Person.existingIds", query = "SELECT p.id FROM Person p WHERE p.id IN :ids"),
+    @NamedQuery(name = "Person.dtoAll", query = "SELECT NEW dto.PersonDTO(p.id, p.firstName, p.lastName, p.phone, p.version, p.lastEdited) FROM Person p"),
+    @NamedQuery(name = "Person.dtoPage", query = "SELECT NEW dto.PersonDTO(p.id, p.firstName, p.lastName, p.phone, p.version, p.lastEdited) FROM Person p WHERE p.id > :after ORDER BY p.id"),
+    @NamedQuery(name = "Person.dtoOrdered", query = "SELECT NEW dto.PersonDTO(p.id, p.firstName, p.lastName, p.phone, p.version, p.lastEdited) FROM Person p ORDER BY p.id"),
+    @NamedQuery(name = "Person.maxChangeSeq", query = "SELECT MAX(p.changeSeq) FROM Person p"),
+    @NamedQuery(name = "Person.changes", query = "SELECT p.changeSeq, p.id, p.firstName, p.lastName, p.phone, p.version, p.lastEdited FROM Person p"
+            + " WHERE p.changeSeq >= :seq AND p.changeSeq <= :horizon AND (p.changeSeq > :seq OR p.id > :id)"
+            + " ORDER BY p.changeSeq, p.id")
+})
+//Used by the prefix searches in PersonFacade.searchPersons
+@Table(indexes = {
+    @Index(name = "idx_person_name", columnList = "lastName, firstName"),
+    @Index(name = "idx_person_first_name", columnList = "firstName"),
+    @Index(name = "idx_person_phone", columnList = "phone"),
+    //Used by the change feed in PersonFacade.getChanges
+    @Index(name = "idx_person_change_seq", columnList = "changeSeq, id")
+})
 public class Person implements Serializable {
 
     private static final long serialVersionUID = 1L;
+    //Ids are handed out from a table in blocks of 50, unlike IDENTITY this
+    //lets EclipseLink batch the inserts because the ids are known up front.
+    //PersonFacade moves the counter past the highest id at startup, so a
+    //table filled while ids were IDENTITY does not get its ids handed out again
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TableGenerator(name = "PersonIds", table = "SEQUENCE", pkColumnName = "SEQ_NAME", valueColumnName = "SEQ_COUNT",
+            pkColumnValue = "PersonIds", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "PersonIds")
     private Integer id;
     private String firstName;
     private String lastName;
     private String phone;
     
-    @Temporal(TemporalType.DATE)
+    @Temporal(TemporalType.TIMESTAMP)
     private Date created;
     
-    @Temporal(TemporalType.DATE)
+    //Set on every write, used for the Last-Modified header
+    @Temporal(TemporalType.TIMESTAMP)
     private Date lastEdited;
 
+    //Incremented on every write, used for the ETag header
+    @Version
+    private int version;
+
+    //Set on every write from the facade's ChangeSequence, used for the change feed
+    private long changeSeq;
+
     public Person() {
     }
 
@@ -39,6 +90,11 @@ public class Person implements Serializable {
         this.created = new Date();
         this.lastEdited = new Date();
     }
+
+    @PreUpdate
+    private void touch() {
+        this.lastEdited = new Date();
+    }
     
     public Integer getId() {
         return id;
@@ -88,6 +144,18 @@ public class Person implements Serializable {
         this.lastEdited = lastEdited;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
     
     
 }
@@ -0,0 +1,63 @@
+package entities;
+
+import java.io.Serializable;
+import java.util.Date;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/*
+ * Marks a deleted person for the change feed, so clients that copied the
+ * person learn that it is gone. Written in the same transaction as the
+ * delete.
+ */
+@Entity
+@NamedQueries({
+    @NamedQuery(name = "PersonTombstone.deleteAllRows", query = "DELETE from PersonTombstone"),
+    @NamedQuery(name = "PersonTombstone.maxChangeSeq", query = "SELECT MAX(t.changeSeq) FROM PersonTombstone t"),
+    @NamedQuery(name = "PersonTombstone.changes", query = "SELECT t.changeSeq, t.id FROM PersonTombstone t"
+            + " WHERE t.changeSeq >= :seq AND t.changeSeq <= :horizon AND (t.changeSeq > :seq OR t.id > :id)"
+            + " ORDER BY t.changeSeq, t.id")
+})
+//Used by the change feed in PersonFacade.getChanges
+@Table(indexes = {
+    @Index(name = "idx_tombstone_change_seq", columnList = "changeSeq, id")
+})
+public class PersonTombstone implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    //The id of the deleted person
+    @Id
+    private Integer id;
+
+    private long changeSeq;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date deleted;
+
+    public PersonTombstone() {
+    }
+
+    public PersonTombstone(Integer id, long changeSeq) {
+        this.id = id;
+        this.changeSeq = changeSeq;
+        this.deleted = new Date();
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public Date getDeleted() {
+        return deleted;
+    }
+}
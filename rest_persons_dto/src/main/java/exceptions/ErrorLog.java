@@ -0,0 +1,101 @@
+package exceptions;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Counts the errors the exception mappers answer, and logs them at most once
+ * per ERROR_LOG_INTERVAL_MS (default 10000) per kind of error, so a flood of
+ * 404s from a client probing ids costs a counter update each, not a log
+ * line. The line that is logged says how many were left out since the last
+ * one. The counts are shown in /api/metrics.
+ */
+public class ErrorLog {
+
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(intFromEnv("ERROR_LOG_INTERVAL_MS", 10000));
+    private static final Map<String, Kind> KINDS = new ConcurrentHashMap<>();
+
+    private ErrorLog() {
+    }
+
+    private static int intFromEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static class Kind {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder suppressed = new LongAdder();
+        //System.nanoTime() when the next one may be logged
+        private final AtomicLong nextLog = new AtomicLong(System.nanoTime());
+        //Left out since the last one logged
+        private final AtomicLong skipped = new AtomicLong();
+    }
+
+    /**
+     * Counts an error, and logs it if none of its kind was logged in the
+     * last interval.
+     *
+     * @param logger the class to log as
+     * @param kind what is counted and limited together, the simple name of
+     * the exception class
+     * @param level the level to log it at, from WARNING up with the stack
+     * trace
+     * @param ex the error
+     */
+    public static void error(Class<?> logger, String kind, Level level, Throwable ex) {
+        Kind k = KINDS.get(kind);
+        if (k == null) {
+            k = KINDS.computeIfAbsent(kind, key -> new Kind());
+        }
+        k.count.increment();
+        long now = System.nanoTime();
+        long next = k.nextLog.get();
+        if (now - next < 0 || !k.nextLog.compareAndSet(next, now + INTERVAL_NANOS)) {
+            k.suppressed.increment();
+            k.skipped.incrementAndGet();
+            return;
+        }
+        long skipped = k.skipped.getAndSet(0);
+        Logger log = Logger.getLogger(logger.getName());
+        if (!log.isLoggable(level)) {
+            return;
+        }
+        String message = skipped == 0 ? "{0}: {1}" : "{0}: {1} ({2} more not logged since the last one)";
+        LogRecord record = new LogRecord(level, message);
+        record.setLoggerName(log.getName());
+        record.setParameters(new Object[]{kind, ex.getMessage(), skipped});
+        if (level.intValue() >= Level.WARNING.intValue()) {
+            record.setThrown(ex);
+        }
+        log.log(record);
+    }
+
+    /**
+     * @return the errors counted per kind, sorted by kind
+     */
+    public static Map<String, Long> getCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        KINDS.forEach((kind, k) -> counts.put(kind, k.count.sum()));
+        return counts;
+    }
+
+    /**
+     * @return the errors counted but not logged
+     */
+    public static long getSuppressed() {
+        long suppressed = 0;
+        for (Kind k : KINDS.values()) {
+            suppressed += k.suppressed.sum();
+        }
+        return suppressed;
+    }
+}
@@ -0,0 +1,76 @@
+package exceptions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Error answers with a body like {"code":404,"message":"..."}. The messages
+ * are mostly the same few, so each body is serialized once and the bytes are
+ * reused, instead of writing an ExceptionDTO through Gson on every error.
+ *
+ * Only the fixed messages in FIXED_MESSAGES and the standard reason phrases
+ * are cached. Any other message, e.g. one that holds a value from the
+ * request, gets a new body every time, so clients cannot fill the cache
+ * with messages of their own.
+ */
+public class ErrorResponses {
+
+    private static final ExceptionDTOAdapter ADAPTER = new ExceptionDTOAdapter();
+    private static final Map<String, byte[]> BODIES = new ConcurrentHashMap<>();
+
+    //The messages the facade and the filters answer with
+    private static final Set<String> FIXED_MESSAGES = new HashSet<>(Arrays.asList(
+            "No person with provided id found",
+            "Could not delete, provided id does not exist",
+            "First name and/or last name is missing",
+            "No fields to update",
+            "The person was changed by someone else, get it again and retry",
+            "Not a valid since token",
+            "Provide firstName, lastName and/or phone to search for",
+            "Provide the text to suggest persons for",
+            "Too many requests, slow down",
+            "The server is busy, try again",
+            "Too many requests waiting for the database",
+            "The database did not answer in time",
+            "The database did not answer in time, the change may still be saved"));
+
+    static {
+        //Used by GenericExceptionMapper
+        for (Response.Status status : Response.Status.values()) {
+            FIXED_MESSAGES.add(status.getReasonPhrase());
+        }
+    }
+
+    private ErrorResponses() {
+    }
+
+    /**
+     * @return a response with the status and the body, ready to build
+     */
+    public static Response.ResponseBuilder status(int status, String message) {
+        return Response.status(status)
+                .entity(body(status, message))
+                .type(MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    public static Response of(int status, String message) {
+        return status(status, message).build();
+    }
+
+    static byte[] body(int status, String message) {
+        if (!FIXED_MESSAGES.contains(message)) {
+            return toJson(status, message);
+        }
+        return BODIES.computeIfAbsent(status + ":" + message, key -> toJson(status, message));
+    }
+
+    private static byte[] toJson(int status, String message) {
+        return ADAPTER.toJson(new ExceptionDTO(status, message)).getBytes(StandardCharsets.UTF_8);
+    }
+}
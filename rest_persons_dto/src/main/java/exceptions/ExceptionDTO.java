@@ -10,7 +10,13 @@ public class ExceptionDTO {
         this.code = code;
         this.message = message;
     }
-    
-    
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
     
 }
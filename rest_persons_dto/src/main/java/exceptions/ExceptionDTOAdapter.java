@@ -0,0 +1,53 @@
+package exceptions;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+
+/**
+ * Writes and reads an ExceptionDTO as {"code":404,"message":"..."} without
+ * reflection.
+ */
+public class ExceptionDTOAdapter extends TypeAdapter<ExceptionDTO> {
+
+    @Override
+    public void write(JsonWriter out, ExceptionDTO e) throws IOException {
+        if (e == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("code").value(e.getCode());
+        if (e.getMessage() != null) {
+            out.name("message").value(e.getMessage());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public ExceptionDTO read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        int code = 0;
+        String message = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if (name.equals("code")) {
+                code = in.nextInt();
+            } else if (name.equals("message")) {
+                message = in.nextString();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return new ExceptionDTO(code, message);
+    }
+}
@@ -1,30 +1,28 @@
 package exceptions;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import java.util.logging.Level;
-import java.util.logging.Logger;
 import javax.ws.rs.WebApplicationException;
-import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
 
 
+/**
+ * Answers every other exception. Client errors Jersey throws itself, like a
+ * path that matches no resource (404) or a wrong method (405), are counted
+ * and logged at INFO. Everything else is a 500, logged at SEVERE with its
+ * stack trace. Either way at most one per ERROR_LOG_INTERVAL_MS per kind is
+ * logged, see ErrorLog.
+ */
 @Provider
 public class GenericExceptionMapper implements ExceptionMapper<Throwable> {
 
-    static Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    
     @Override
     public Response toResponse(Throwable ex) {
         Response.StatusType type = getStatusType(ex);
-        Logger.getLogger(GenericExceptionMapper.class.getName()).log(Level.SEVERE, null, ex);
-        ExceptionDTO err = new ExceptionDTO(type.getStatusCode(),type.getReasonPhrase());
-        return Response.status(type.getStatusCode())
-                .entity(gson.toJson(err))
-                .type(MediaType.APPLICATION_JSON).
-                build();
+        Level level = type.getStatusCode() < 500 ? Level.INFO : Level.SEVERE;
+        ErrorLog.error(GenericExceptionMapper.class, ex.getClass().getSimpleName(), level, ex);
+        return ErrorResponses.of(type.getStatusCode(), type.getReasonPhrase());
     }
      private Response.StatusType getStatusType(Throwable ex) {
         if (ex instanceof WebApplicationException) {
@@ -1,9 +1,12 @@
 package exceptions;
 
-
+/**
+ * Thrown when a request lacks a field it needs. A client error, so it has no
+ * stack trace, which would only point at the check that threw it.
+ */
 public class MissingInputException extends Exception {
     
     public MissingInputException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -1,10 +1,6 @@
 package exceptions;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import java.util.logging.Level;
-import java.util.logging.Logger;
-import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
@@ -13,16 +9,9 @@ import javax.ws.rs.ext.Provider;
 @Provider
 public class MissingInputExceptionMapper implements ExceptionMapper<MissingInputException> 
 {
-    static Gson gson = new GsonBuilder().setPrettyPrinting().create();   
     @Override
     public Response toResponse(MissingInputException ex) {
-       Logger.getLogger(MissingInputExceptionMapper.class.getName())
-           .log(Level.SEVERE, null, ex);
-       ExceptionDTO err = new ExceptionDTO(400,ex.getMessage());
-       return Response
-               .status(400)
-               .entity(gson.toJson(err))
-               .type(MediaType.APPLICATION_JSON)
-               .build();
+       ErrorLog.error(MissingInputExceptionMapper.class, "MissingInputException", Level.INFO, ex);
+       return ErrorResponses.of(400, ex.getMessage());
 	}
 }
@@ -0,0 +1,12 @@
+package exceptions;
+
+/**
+ * Thrown when a person was changed by someone else since the client read
+ * it. A client error, so it has no stack trace.
+ */
+public class PersonConflictException extends Exception {
+
+    public PersonConflictException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,16 @@
+package exceptions;
+
+import java.util.logging.Level;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+@Provider
+public class PersonConflictExceptionMapper implements ExceptionMapper<PersonConflictException> 
+{
+    @Override
+    public Response toResponse(PersonConflictException ex) {
+       ErrorLog.error(PersonConflictExceptionMapper.class, "PersonConflictException", Level.INFO, ex);
+       return ErrorResponses.of(409, ex.getMessage());
+	}
+}
@@ -1,9 +1,13 @@
 package exceptions;
 
-
+/**
+ * Thrown when no person has the given id. Expected, and thrown a lot by
+ * clients probing ids, so it has no stack trace: filling it in would cost
+ * more than the rest of the 404 answer.
+ */
 public class PersonNotFoundException extends Exception {
 
     public PersonNotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
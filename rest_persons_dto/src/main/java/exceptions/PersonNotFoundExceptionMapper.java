@@ -1,10 +1,6 @@
 package exceptions;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import java.util.logging.Level;
-import java.util.logging.Logger;
-import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
@@ -12,17 +8,9 @@ import javax.ws.rs.ext.Provider;
 @Provider
 public class PersonNotFoundExceptionMapper implements ExceptionMapper<PersonNotFoundException> 
 {
-    static Gson gson = new GsonBuilder().setPrettyPrinting().create();   
     @Override
     public Response toResponse(PersonNotFoundException ex) {
-       Logger.getLogger(PersonNotFoundExceptionMapper.class.getName())
-           .log(Level.SEVERE, null, ex);
-       ExceptionDTO err = new ExceptionDTO(404,ex.getMessage());
-       return Response
-               .status(404)
-               .entity(gson.toJson(err))
-               .type(MediaType.APPLICATION_JSON)
-               .build();
+       ErrorLog.error(PersonNotFoundExceptionMapper.class, "PersonNotFoundException", Level.INFO, ex);
+       return ErrorResponses.of(404, ex.getMessage());
 	}
 }
-
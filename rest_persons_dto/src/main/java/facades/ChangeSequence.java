@@ -0,0 +1,54 @@
+package facades;
+
+import java.util.TreeSet;
+
+/**
+ * Hands out the change sequence numbers of PersonFacade's writes, used by
+ * the change feed (see PersonFacade.getChanges). Every transaction that
+ * writes persons takes the next number and stamps it on the rows it
+ * changes, and on the tombstones of the rows it deletes.
+ *
+ * Transactions do not commit in the order they took their numbers, so a
+ * reader that saw number 6 committed could miss number 5 if it is committed
+ * a moment later. Readers only look up to the horizon instead: the highest
+ * number below every transaction still running. Writers call done when they
+ * have committed or rolled back.
+ *
+ * The numbers are kept in this JVM, like the cache and the suggestion index,
+ * so only one instance may write to the Person table. They start after the
+ * highest number stored.
+ */
+public class ChangeSequence {
+
+    private long last;
+    private final TreeSet<Long> running = new TreeSet<>();
+
+    /**
+     * @param last the highest number already stored
+     */
+    public ChangeSequence(long last) {
+        this.last = last;
+    }
+
+    /**
+     * @return the number of a new transaction, done must be called with it
+     * once the transaction has ended
+     */
+    public synchronized long next() {
+        last++;
+        running.add(last);
+        return last;
+    }
+
+    public synchronized void done(long seq) {
+        running.remove(seq);
+    }
+
+    /**
+     * @return the highest number whose writes, and all writes before them,
+     * have ended
+     */
+    public synchronized long horizon() {
+        return running.isEmpty() ? last : running.first() - 1;
+    }
+}
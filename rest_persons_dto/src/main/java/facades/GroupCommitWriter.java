@@ -0,0 +1,298 @@
+package facades;
+
+import dto.GroupCommitStatsDTO;
+import dto.PersonDTO;
+import entities.Person;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+
+/**
+ * Group commit for PersonFacade.addPerson, turned on with GROUP_COMMIT=true.
+ * Each create is queued, and one writer thread commits the queued persons
+ * in one transaction, so concurrent creates share a commit, and its fsync,
+ * instead of paying for one each. The writer takes what is queued, waits up
+ * to GROUP_COMMIT_LINGER_MS for more until it has GROUP_COMMIT_BATCH_SIZE,
+ * and commits. When creates come one at a time, the linger is all they wait
+ * extra.
+ *
+ * Every caller gets its own PersonDTO. If the shared transaction fails, the
+ * persons of the batch are written again one transaction each, so a bad row
+ * only fails its own caller.
+ *
+ * When GROUP_COMMIT_QUEUE creates are already waiting, a create is written
+ * on the caller's thread instead, as if group commit was off. The same goes
+ * for creates after close, which stops the writer thread.
+ *
+ * Configured from environment variables:
+ * GROUP_COMMIT             - "true" turns it on
+ * GROUP_COMMIT_BATCH_SIZE  - most persons per transaction (default 100)
+ * GROUP_COMMIT_LINGER_MS   - longest wait for more persons (default 2)
+ * GROUP_COMMIT_QUEUE       - most creates waiting (default 10000)
+ * GROUP_COMMIT_TIMEOUT_MS  - longest wait for a commit (default 30000)
+ */
+public class GroupCommitWriter {
+
+    //How often the writer checks for close while the queue is empty
+    private static final long CLOSE_CHECK_MILLIS = 100;
+
+    private final EntityManagerFactory emf;
+    private final ChangeSequence changes;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long timeoutNanos;
+    private final BlockingQueue<Pending> queue;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong persons = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private volatile int largestBatch;
+
+    private static class Pending {
+
+        final Person person;
+        //The id the caller gave, a failed commit leaves the generated one
+        final Integer id;
+        final CompletableFuture<PersonDTO> result = new CompletableFuture<>();
+
+        Pending(Person person) {
+            this.person = person;
+            this.id = person.getId();
+        }
+    }
+
+    /**
+     * @param changes stamps each transaction's persons with its change
+     * sequence number
+     */
+    public GroupCommitWriter(EntityManagerFactory emf, ChangeSequence changes, int batchSize, long lingerMillis, int queueSize) {
+        this(emf, changes, batchSize, lingerMillis, queueSize, 30000);
+    }
+
+    /**
+     * @param timeoutMillis how long add waits for the commit
+     */
+    public GroupCommitWriter(EntityManagerFactory emf, ChangeSequence changes, int batchSize, long lingerMillis, int queueSize,
+            long timeoutMillis) {
+        this.emf = emf;
+        this.changes = changes;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.writer = new Thread(this::run, "group-commit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return a writer configured from the environment, or null if
+     * GROUP_COMMIT is not "true"
+     */
+    public static GroupCommitWriter fromEnvironment(EntityManagerFactory emf, ChangeSequence changes) {
+        if (!"true".equalsIgnoreCase(System.getenv("GROUP_COMMIT"))) {
+            return null;
+        }
+        return new GroupCommitWriter(emf, changes, intFromEnv("GROUP_COMMIT_BATCH_SIZE", 100),
+                intFromEnv("GROUP_COMMIT_LINGER_MS", 2), intFromEnv("GROUP_COMMIT_QUEUE", 10000),
+                intFromEnv("GROUP_COMMIT_TIMEOUT_MS", 30000));
+    }
+
+    private static int intFromEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Saves the person with the next group commit, and waits for it.
+     *
+     * @return the saved person, with its id
+     * @throws javax.persistence.PersistenceException if the person could not
+     * be saved, or the commit took longer than the timeout, then the person
+     * may still be saved
+     */
+    public PersonDTO add(Person person) {
+        if (closed) {
+            return writeOne(person);
+        }
+        Pending pending = new Pending(person);
+        if (!queue.offer(pending)) {
+            overflows.incrementAndGet();
+            return writeOne(person);
+        }
+        if (closed && queue.remove(pending)) {
+            //Closed while we queued, no one is left to write it
+            return writeOne(person);
+        }
+        boolean interrupted = false;
+        long deadline = System.nanoTime() + timeoutNanos;
+        try {
+            while (true) {
+                try {
+                    return pending.result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException ex) {
+                    //The person may be committed any moment, so wait for the answer
+                    interrupted = true;
+                } catch (TimeoutException ex) {
+                    throw new PersistenceException("The group commit did not answer in time, the person may still be saved");
+                }
+            }
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw (Error) ex.getCause();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (!closed) {
+            try {
+                //Not take, so a close is noticed without interrupting a commit
+                Pending first = queue.poll(CLOSE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long wait = deadline - System.nanoTime();
+                    Pending next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException ex) {
+                //Someone wants the thread gone, stop as if closed
+                closed = true;
+                failAll(batch);
+            } catch (RuntimeException | Error ex) {
+                //commit answers every caller itself, this is a bug in the loop, keep the writer alive
+                batch.forEach(p -> p.result.completeExceptionally(ex));
+            } finally {
+                batch.clear();
+            }
+        }
+        failQueued();
+    }
+
+    private void commit(List<Pending> batch) {
+        EntityManager em = emf.createEntityManager();
+        boolean committed = false;
+        long seq = changes.next();
+        try {
+            em.getTransaction().begin();
+            batch.forEach(p -> {
+                p.person.setChangeSeq(seq);
+                em.persist(p.person);
+            });
+            em.getTransaction().commit();
+            committed = true;
+        } catch (RuntimeException ex) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            changes.done(seq);
+            em.close();
+        }
+        if (!committed) {
+            retryOneByOne(batch);
+            return;
+        }
+        commits.incrementAndGet();
+        persons.addAndGet(batch.size());
+        if (batch.size() > largestBatch) {
+            largestBatch = batch.size();
+        }
+        batch.forEach(p -> p.result.complete(new PersonDTO(p.person)));
+    }
+
+    private void retryOneByOne(List<Pending> batch) {
+        retries.incrementAndGet();
+        for (Pending p : batch) {
+            //Start over from the values, the failed commit may have changed the entity
+            Person fresh = new Person(p.person.getFirstName(), p.person.getLastName(), p.person.getPhone());
+            fresh.setId(p.id);
+            try {
+                p.result.complete(writeOne(fresh));
+                commits.incrementAndGet();
+                persons.incrementAndGet();
+            } catch (RuntimeException ex) {
+                p.result.completeExceptionally(ex);
+            }
+        }
+    }
+
+    private PersonDTO writeOne(Person person) {
+        EntityManager em = emf.createEntityManager();
+        long seq = changes.next();
+        try {
+            person.setChangeSeq(seq);
+            em.getTransaction().begin();
+            em.persist(person);
+            em.getTransaction().commit();
+            return new PersonDTO(person);
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            changes.done(seq);
+            em.close();
+        }
+    }
+
+    /**
+     * Stops the writer thread once the commit it is doing, if any, is done,
+     * and waits for that up to the timeout.
+     * Creates still queued fail with a PersistenceException, later creates
+     * are written on the caller's thread.
+     */
+    public void close() {
+        closed = true;
+        try {
+            writer.join(TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        failQueued();
+    }
+
+    private void failQueued() {
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        failAll(left);
+    }
+
+    private static void failAll(List<Pending> pending) {
+        PersistenceException closedEx = new PersistenceException("The group commit writer was closed");
+        pending.forEach(p -> p.result.completeExceptionally(closedEx));
+    }
+
+    public GroupCommitStatsDTO getStats() {
+        return new GroupCommitStatsDTO(true, batchSize, TimeUnit.NANOSECONDS.toMillis(lingerNanos), queue.size(),
+                commits.get(), persons.get(), largestBatch, retries.get(), overflows.get());
+    }
+}
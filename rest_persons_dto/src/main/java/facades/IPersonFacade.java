@@ -1,16 +1,32 @@
 package facades;
 
+import dto.BatchResultDTO;
+import dto.BulkEditDTO;
+import dto.BulkResultDTO;
+import dto.ChangesDTO;
 import dto.PersonDTO;
 import dto.PersonsDTO;
 import exceptions.MissingInputException;
+import exceptions.PersonConflictException;
 import exceptions.PersonNotFoundException;
+import java.util.List;
+import java.util.function.Consumer;
 
 
 public interface IPersonFacade {
     public PersonDTO addPerson(String fName, String lName, String phone) throws MissingInputException;
+    public BatchResultDTO addPersons(List<PersonDTO> persons);
     public PersonDTO deletePerson(int id) throws PersonNotFoundException;
+    public BulkResultDTO deletePersons(List<Integer> ids);
     public PersonDTO getPerson(int id) throws PersonNotFoundException;
     public PersonsDTO getAllPersons();
+    public PersonsDTO getPersonsPage(int after, int limit);
+    public ChangesDTO getChanges(String since, int limit) throws MissingInputException;
+    public PersonsDTO searchPersons(String firstName, String lastName, String phone, int offset, int limit) throws MissingInputException;
+    public PersonsDTO suggestPersons(String query, int limit) throws MissingInputException;
+    public void forEachPerson(Consumer<PersonDTO> action);
     public PersonDTO editPerson(PersonDTO p) throws PersonNotFoundException, MissingInputException;
+    public BulkResultDTO editPersons(BulkEditDTO edit) throws MissingInputException;
+    public PersonDTO patchPerson(int id, PersonDTO changes, Integer expectedVersion) throws PersonNotFoundException, MissingInputException, PersonConflictException;
     
 }
@@ -0,0 +1,142 @@
+package facades;
+
+import dto.CacheStatsDTO;
+import dto.PersonDTO;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded, in-process cache of PersonDTO's keyed by id, used by PersonFacade.
+ *
+ * Entries are evicted in least recently used order when the cache is full,
+ * and are dropped when they are older than the time to live. The cached DTO's
+ * are handed out as they are, so callers must treat them as read-only.
+ *
+ * Every write bumps a generation counter. A reader takes a stamp before going
+ * to the database and only stores its result if no write happened in the
+ * meantime, so a slow read can never put back a person that was just edited
+ * or deleted.
+ */
+public class PersonCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<Integer, Entry> entries;
+
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    private static class Entry {
+
+        final PersonDTO person;
+        final long expiresAt;
+
+        Entry(PersonDTO person, long expiresAt) {
+            this.person = person;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @param maxSize the maximum number of persons to keep, 0 disables the
+     * cache
+     * @param ttlSeconds how long a person may be served from the cache
+     */
+    public PersonCache(int maxSize, long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        //accessOrder = true turns the map into an LRU list
+        this.entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                if (size() > PersonCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Creates a cache configured from the environment variables
+     * PERSON_CACHE_SIZE (default 10000) and PERSON_CACHE_TTL_SECONDS
+     * (default 60).
+     */
+    public static PersonCache fromEnvironment() {
+        int size = intFromEnv("PERSON_CACHE_SIZE", 10000);
+        int ttl = intFromEnv("PERSON_CACHE_TTL_SECONDS", 60);
+        return new PersonCache(size, ttl);
+    }
+
+    private static int intFromEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * @return the cached person, or null if it is not cached or has expired
+     */
+    public synchronized PersonDTO get(int id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt > 0) {
+            entries.remove(id);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.person;
+    }
+
+    /**
+     * @return a stamp to pass to putIfUnchanged after loading a person
+     */
+    public synchronized long stamp() {
+        return generation;
+    }
+
+    /**
+     * Caches a person that was read from the database, unless a write has
+     * happened since the stamp was taken.
+     */
+    public synchronized void putIfUnchanged(PersonDTO person, long stamp) {
+        if (stamp == generation) {
+            store(person);
+        }
+    }
+
+    /**
+     * Removes a person that was changed or deleted in the database. Writes
+     * never put their result in the cache, a write racing another write or a
+     * delete could put back an old or deleted person. The next read loads it.
+     */
+    public synchronized void invalidate(int id) {
+        generation++;
+        entries.remove(id);
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized CacheStatsDTO getStats() {
+        return new CacheStatsDTO(entries.size(), maxSize, TimeUnit.NANOSECONDS.toSeconds(ttlNanos),
+                hits, misses, evictions, expirations);
+    }
+
+    private void store(PersonDTO person) {
+        if (maxSize > 0) {
+            entries.put(person.getId(), new Entry(person, System.nanoTime() + ttlNanos));
+        }
+    }
+}
@@ -1,33 +1,88 @@
 package facades;
 
+import dto.BatchItemDTO;
+import dto.BatchResultDTO;
+import dto.BulkEditDTO;
+import dto.BulkResultDTO;
+import dto.CacheStatsDTO;
+import dto.ChangesDTO;
+import dto.CoalescingStatsDTO;
+import dto.GroupCommitStatsDTO;
 import dto.PersonDTO;
 import dto.PersonsDTO;
+import dto.SearchIndexStatsDTO;
 import entities.Person;
+import entities.PersonTombstone;
+import exceptions.ErrorLog;
 import exceptions.MissingInputException;
+import exceptions.PersonConflictException;
 import exceptions.PersonNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.queries.CursoredStream;
+import utils.SchemaUpgrade;
 
 
 public class PersonFacade implements IPersonFacade {
 
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int STREAM_FETCH_SIZE = 500;
+    public static final int BATCH_CHUNK_SIZE = 500;
+    public static final int DEFAULT_SUGGEST_LIMIT = 10;
+    public static final int MAX_SUGGEST_LIMIT = 100;
+
     private static PersonFacade instance;
     private static EntityManagerFactory emf;
+    private static PersonCache cache;
+    private static PersonSearchIndex searchIndex;
+    private static SingleFlight loads;
+    private static ChangeSequence changeSequence;
+    //Null unless GROUP_COMMIT=true, and after close
+    private static volatile GroupCommitWriter groupCommit;
+
+    //Keys of the coalesced loads, persons are keyed by their id and pages by "page:after:size"
+    private static final String COUNT_KEY = "count";
+    private static final String ALL_KEY = "all";
 
     //Private Constructor to ensure Singleton
     private PersonFacade() {
     }
 
     /**
+     * Synchronized, because the startup thread and the first requests can
+     * ask for the facade at the same time, and the state below must only be
+     * made once. The instance is published after all of it is set.
      *
      * @param _emf
      * @return an instance of this facade class.
      */
-    public static PersonFacade getPersonFacade(EntityManagerFactory _emf) {
+    public static synchronized PersonFacade getPersonFacade(EntityManagerFactory _emf) {
         if (instance == null) {
             emf = _emf;
+            SchemaUpgrade.run(emf);
+            seedPersonIds();
+            cache = PersonCache.fromEnvironment();
+            searchIndex = new PersonSearchIndex();
+            loads = SingleFlight.fromEnvironment();
+            changeSequence = new ChangeSequence(lastChangeSeq());
+            groupCommit = GroupCommitWriter.fromEnvironment(emf, changeSequence);
             instance = new PersonFacade();
         }
         return instance;
@@ -37,37 +92,289 @@ public class PersonFacade implements IPersonFacade {
         return emf.createEntityManager();
     }
 
+    /*
+     * Moves the PersonIds counter in the SEQUENCE table (see Person.id) past
+     * the highest id stored. Ids used to be IDENTITY, and on a table filled
+     * back then the counter starts at 0, so the generator would hand out ids
+     * that are taken. Runs before the facade writes anything.
+     */
+    private static void seedPersonIds() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            Integer maxId = em.createNamedQuery("Person.maxId", Integer.class).getSingleResult();
+            if (maxId == null) {
+                return;
+            }
+            em.getTransaction().begin();
+            int updated = em.createNativeQuery("UPDATE SEQUENCE SET SEQ_COUNT = ? WHERE SEQ_NAME = ? AND SEQ_COUNT < ?")
+                    .setParameter(1, maxId).setParameter(2, "PersonIds").setParameter(3, maxId)
+                    .executeUpdate();
+            if (updated == 0) {
+                Number rows = (Number) em.createNativeQuery("SELECT COUNT(*) FROM SEQUENCE WHERE SEQ_NAME = ?")
+                        .setParameter(1, "PersonIds")
+                        .getSingleResult();
+                if (rows.intValue() == 0) {
+                    em.createNativeQuery("INSERT INTO SEQUENCE (SEQ_NAME, SEQ_COUNT) VALUES (?, ?)")
+                            .setParameter(1, "PersonIds").setParameter(2, maxId)
+                            .executeUpdate();
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    //The highest change sequence number stored, so the sequence goes on from there
+    private static long lastChangeSeq() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            Long persons = em.createNamedQuery("Person.maxChangeSeq", Long.class).getSingleResult();
+            Long tombstones = em.createNamedQuery("PersonTombstone.maxChangeSeq", Long.class).getSingleResult();
+            return Math.max(persons == null ? 0 : persons, tombstones == null ? 0 : tombstones);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * @return hit, miss and eviction counters for the cache in front of
+     * getPerson
+     */
+    public CacheStatsDTO getCacheStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Empties the person cache, use it after changing the Person table
+     * without going through this facade.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * @return how many reads of getPerson, getPersonCount, getAllPersons and
+     * getPersonsPage shared a load with a read that was already running
+     */
+    public CoalescingStatsDTO getCoalescingStats() {
+        return loads.getStats();
+    }
+
+    /**
+     * @return the batches written by group commit, or enabled=false if
+     * GROUP_COMMIT is off
+     */
+    public GroupCommitStatsDTO getGroupCommitStats() {
+        GroupCommitWriter writer = groupCommit;
+        return writer == null ? new GroupCommitStatsDTO() : writer.getStats();
+    }
+
+    /**
+     * Stops the group commit writer thread, if there is one. Called when the
+     * application is shut down, persons added afterwards are written one
+     * transaction each.
+     */
+    public void close() {
+        GroupCommitWriter writer = groupCommit;
+        groupCommit = null;
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return the size and estimated memory use of the suggestion index
+     */
+    public SearchIndexStatsDTO getSearchIndexStats() {
+        return searchIndex.getStats();
+    }
+
+    /**
+     * Fills the suggestion index from the Person table, reading it through
+     * forEachPerson. Called once at startup, and again after changing the
+     * Person table without going through this facade. The index is emptied
+     * first, so suggestions are incomplete until the build is done. Writes
+     * made through this facade while it runs are kept, and persons deleted
+     * are not put back, see PersonSearchIndex.put.
+     */
+    public void rebuildSearchIndex() {
+        long start = System.nanoTime();
+        searchIndex.startBuild();
+        try {
+            forEachPerson(searchIndex::put);
+        } finally {
+            searchIndex.finishBuild(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Concurrent calls share one query, see SingleFlight.
+     */
     public long getPersonCount() {
+        return loads.run(COUNT_KEY, this::loadPersonCount);
+    }
+
+    private long loadPersonCount() {
         EntityManager em = emf.createEntityManager();
         try {
-            long personCount = (long) em.createQuery("SELECT COUNT(p) FROM Person p").getSingleResult();
+            long personCount = (long) em.createNamedQuery("Person.count").getSingleResult();
             return personCount;
         } finally {
             em.close();
         }
     }
 
+    /**
+     * Runs each of the read queries once, so EclipseLink has parsed them and
+     * built their SQL before a request needs them. At most one row is read
+     * per query and nothing is put in the cache.
+     */
+    public void warmUp() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.createNamedQuery("Person.count").getSingleResult();
+            em.createNamedQuery("Person.countById").setParameter("id", 0).getSingleResult();
+            em.createNamedQuery("Person.existingIds").setParameter("ids", Arrays.asList(0)).getResultList();
+            em.createNamedQuery("Person.dtoByIds").setParameter("ids", Arrays.asList(0)).getResultList();
+            em.createNamedQuery("Person.dtoAll").setMaxResults(1).getResultList();
+            em.createNamedQuery("Person.dtoPage").setParameter("after", 0).setMaxResults(1).getResultList();
+            em.createNamedQuery("Person.dtoOrdered").setMaxResults(1).getResultList();
+            em.createNamedQuery("Person.changes").setParameter("seq", 0L).setParameter("id", 0)
+                    .setParameter("horizon", 0L).setMaxResults(1).getResultList();
+            em.createNamedQuery("PersonTombstone.changes").setParameter("seq", 0L).setParameter("id", 0)
+                    .setParameter("horizon", 0L).setMaxResults(1).getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void checkNames(String fName, String lName) throws MissingInputException {
+        if (fName == null || lName == null || fName.length() == 0 || lName.length() == 0) {
+            throw new MissingInputException("First name and/or last name is missing");
+        }
+    }
+
+    /**
+     * With GROUP_COMMIT=true the person is saved together with other persons
+     * added at the same time, in one transaction, see GroupCommitWriter.
+     */
     @Override
     public PersonDTO addPerson(String fName, String lName, String phone) throws MissingInputException {
-        if (fName.length() == 0 || lName.length() == 0) {
-            throw new MissingInputException("First name and/or last name is missing");
+        checkNames(fName, lName);
+        GroupCommitWriter writer = groupCommit;
+        if (writer != null) {
+            PersonDTO added = writer.add(new Person(fName, lName, phone));
+            loads.forgetAll();
+            cache.invalidate(added.getId());
+            searchIndex.put(added);
+            return added;
         }
         EntityManager em = emf.createEntityManager();
         Person person = new Person(fName, lName, phone);
+        long seq = changeSequence.next();
         try {
+            person.setChangeSeq(seq);
             em.getTransaction().begin();
             em.persist(person);
             em.getTransaction().commit();
+            loads.forgetAll();
 
-            return new PersonDTO(person);
+            PersonDTO added = new PersonDTO(person);
+            //Not put, a concurrent write may have committed after ours, see PersonCache.invalidate
+            cache.invalidate(added.getId());
+            searchIndex.put(added);
+            return added;
         } finally {
+            changeSequence.done(seq);
             em.close();
         }
     }
 
+    /**
+     * Creates many persons at once. The persons are written in transactions
+     * of BATCH_CHUNK_SIZE, and the inserts of a chunk are sent as JDBC
+     * batches (see eclipselink.jdbc.batch-writing in persistence.xml). A
+     * person that fails validation is reported in the result and does not
+     * stop the others. If a chunk fails to commit, every person in that
+     * chunk is reported as failed.
+     *
+     * New persons are not put in the cache, so a large batch does not push
+     * out the persons that are actually being read.
+     *
+     * @param persons the persons to create, ids are ignored
+     * @return one result per person, in the order they were given
+     */
+    @Override
+    public BatchResultDTO addPersons(List<PersonDTO> persons) {
+        BatchItemDTO[] items = new BatchItemDTO[persons.size()];
+        for (int start = 0; start < persons.size(); start += BATCH_CHUNK_SIZE) {
+            int end = Math.min(start + BATCH_CHUNK_SIZE, persons.size());
+            List<Integer> indexes = new ArrayList<>();
+            List<Person> chunk = new ArrayList<>();
+            for (int i = start; i < end; i++) {
+                PersonDTO p = persons.get(i);
+                try {
+                    if (p == null) {
+                        throw new MissingInputException("First name and/or last name is missing");
+                    }
+                    checkNames(p.getfName(), p.getlName());
+                    indexes.add(i);
+                    chunk.add(new Person(p.getfName(), p.getlName(), p.getPhone()));
+                } catch (MissingInputException ex) {
+                    items[i] = new BatchItemDTO(i, 400, ex.getMessage());
+                }
+            }
+            if (chunk.isEmpty()) {
+                continue;
+            }
+            EntityManager em = emf.createEntityManager();
+            long seq = changeSequence.next();
+            try {
+                em.getTransaction().begin();
+                for (Person person : chunk) {
+                    person.setChangeSeq(seq);
+                    em.persist(person);
+                }
+                em.getTransaction().commit();
+                loads.forgetAll();
+                for (int i = 0; i < chunk.size(); i++) {
+                    PersonDTO added = new PersonDTO(chunk.get(i));
+                    searchIndex.put(added);
+                    items[indexes.get(i)] = new BatchItemDTO(indexes.get(i), added);
+                }
+            } catch (RuntimeException ex) {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+                //The cause is logged, not sent, it may hold SQL and driver details
+                ErrorLog.error(PersonFacade.class, ex.getClass().getSimpleName(), Level.SEVERE, ex);
+                for (int index : indexes) {
+                    items[index] = new BatchItemDTO(index, 500, "Could not save person");
+                }
+            } finally {
+                changeSequence.done(seq);
+                em.close();
+            }
+        }
+        BatchResultDTO result = new BatchResultDTO();
+        for (BatchItemDTO item : items) {
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * Leaves a PersonTombstone, so the change feed can tell that the person
+     * was deleted.
+     */
     @Override
     public PersonDTO deletePerson(int id) throws PersonNotFoundException {
         EntityManager em = emf.createEntityManager();
+        long seq = changeSequence.next();
         try {
             Person person = em.find(Person.class, id);
             if (person == null) {
@@ -75,51 +382,545 @@ public class PersonFacade implements IPersonFacade {
             } else {
                 em.getTransaction().begin();
                 em.remove(person);
+                em.persist(new PersonTombstone(id, seq));
                 em.getTransaction().commit();
+                loads.forgetAll();
+                cache.invalidate(id);
+                searchIndex.remove(id);
 
                 return new PersonDTO(person);
             }
 
         } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            changeSequence.done(seq);
             em.close();
         }
     }
 
+    /**
+     * Deletes many persons with one DELETE ... WHERE id IN (...) per chunk of
+     * BATCH_CHUNK_SIZE ids, instead of a find and a remove per person. A
+     * PersonTombstone is left for each, like deletePerson does.
+     *
+     * @param ids the ids to delete, duplicates are ignored
+     * @return the ids that were deleted and the ids that did not exist
+     */
+    @Override
+    public BulkResultDTO deletePersons(List<Integer> ids) {
+        BulkResultDTO result = bulkUpdate(ids, "DELETE FROM Person p WHERE p.id IN :ids", null, true);
+        result.getAffected().forEach(searchIndex::remove);
+        return result;
+    }
+
+    /**
+     * Sets the same first name, last name and/or phone on many persons with
+     * one UPDATE ... WHERE id IN (...) per chunk of BATCH_CHUNK_SIZE ids.
+     * Fields left out (null) are not changed.
+     *
+     * @param edit the ids to update and the new values
+     * @return the ids that were updated and the ids that did not exist
+     * @throws MissingInputException if no field is given, or a name is empty
+     */
+    @Override
+    public BulkResultDTO editPersons(BulkEditDTO edit) throws MissingInputException {
+        Map<String, Object> values = changedFields(edit.getfName(), edit.getlName(), edit.getPhone());
+        BulkResultDTO result = bulkUpdate(edit.getIds(), updateStatement(values, "p.id IN :ids"), values, false);
+        reindex(result.getAffected());
+        return result;
+    }
+
+    /*
+     * Reads persons changed by a bulk update back into the suggestion index,
+     * one query per chunk of BATCH_CHUNK_SIZE ids, as the update statement
+     * does not hand back the new versions.
+     */
+    private void reindex(List<Integer> ids) {
+        for (int start = 0; start < ids.size(); start += BATCH_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(start, Math.min(start + BATCH_CHUNK_SIZE, ids.size()));
+            EntityManager em = emf.createEntityManager();
+            try {
+                em.createNamedQuery("Person.dtoByIds", PersonDTO.class)
+                        .setParameter("ids", chunk)
+                        .getResultList()
+                        .forEach(searchIndex::put);
+            } finally {
+                em.close();
+            }
+        }
+    }
+
+    /*
+     * Collects the fields to change for a partial update, null means "leave
+     * as is". lastEdited is always set, because bulk updates skip @PreUpdate.
+     */
+    private static Map<String, Object> changedFields(String fName, String lName, String phone) throws MissingInputException {
+        Map<String, Object> values = new LinkedHashMap<>();
+        if (fName != null) {
+            values.put("firstName", fName);
+        }
+        if (lName != null) {
+            values.put("lastName", lName);
+        }
+        if (phone != null) {
+            values.put("phone", phone);
+        }
+        if (values.isEmpty()) {
+            throw new MissingInputException("No fields to update");
+        }
+        if ("".equals(fName) || "".equals(lName)) {
+            throw new MissingInputException("First name and/or last name is missing");
+        }
+        values.put("lastEdited", new Date());
+        return values;
+    }
+
+    /*
+     * Bulk updates skip @Version too, so the version is bumped here. The
+     * statement also takes a :changeSeq parameter, as every write must set it.
+     */
+    private static String updateStatement(Map<String, Object> values, String where) {
+        StringBuilder jpql = new StringBuilder("UPDATE Person p SET p.version = p.version + 1, p.changeSeq = :changeSeq");
+        values.keySet().forEach(field -> jpql.append(", p.").append(field).append(" = :").append(field));
+        jpql.append(" WHERE ").append(where);
+        return jpql.toString();
+    }
+
+    /**
+     * Changes only the given fields of a person, with one conditional UPDATE
+     * statement instead of a find followed by a dirty check. No row is locked
+     * while the client works on its copy. Optimistic locking with the version
+     * column stops lost updates instead.
+     *
+     * @param id the person to change
+     * @param changes the new values, null fields are left as they are
+     * @param expectedVersion the version the client based its change on, or
+     * null to change whatever version is stored
+     * @return the person as the change left it, read in the same transaction
+     * @throws PersonConflictException if the person was changed by someone
+     * else since expectedVersion
+     */
+    @Override
+    public PersonDTO patchPerson(int id, PersonDTO changes, Integer expectedVersion)
+            throws PersonNotFoundException, MissingInputException, PersonConflictException {
+        Map<String, Object> values = changedFields(changes.getfName(), changes.getlName(), changes.getPhone());
+        String where = expectedVersion == null ? "p.id = :id" : "p.id = :id AND p.version = :version";
+        EntityManager em = emf.createEntityManager();
+        long seq = changeSequence.next();
+        try {
+            em.getTransaction().begin();
+            Query update = em.createQuery(updateStatement(values, where))
+                    .setParameter("id", id)
+                    .setParameter("changeSeq", seq);
+            values.forEach(update::setParameter);
+            if (expectedVersion != null) {
+                update.setParameter("version", expectedVersion);
+            }
+            int updated = update.executeUpdate();
+            PersonDTO patched = null;
+            if (updated > 0) {
+                //Our UPDATE holds the row lock until the commit, so this reads exactly what we wrote
+                patched = em.createNamedQuery("Person.dtoByIds", PersonDTO.class)
+                        .setParameter("ids", Arrays.asList(id))
+                        .getSingleResult();
+            }
+            em.getTransaction().commit();
+            loads.forgetAll();
+            cache.invalidate(id);
+            if (patched == null) {
+                //Find out why nothing was updated
+                long found = em.createNamedQuery("Person.countById", Long.class)
+                        .setParameter("id", id)
+                        .getSingleResult();
+                if (found == 0) {
+                    throw new PersonNotFoundException("No person with provided id found");
+                }
+                throw new PersonConflictException("The person was changed by someone else, get it again and retry");
+            }
+            searchIndex.put(patched);
+            return patched;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            changeSequence.done(seq);
+            em.close();
+        }
+    }
+
+    /*
+     * Runs a bulk UPDATE or DELETE for the given ids, one transaction per
+     * chunk. The ids that exist are looked up first, in the same transaction,
+     * so we can report which ids were not found. That is two statements per
+     * chunk, no matter how many ids the chunk holds, plus a batch of
+     * tombstone inserts for deletes.
+     */
+    private BulkResultDTO bulkUpdate(List<Integer> ids, String jpql, Map<String, Object> values, boolean delete) {
+        BulkResultDTO result = new BulkResultDTO();
+        List<Integer> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        for (int start = 0; start < distinct.size(); start += BATCH_CHUNK_SIZE) {
+            List<Integer> chunk = distinct.subList(start, Math.min(start + BATCH_CHUNK_SIZE, distinct.size()));
+            EntityManager em = emf.createEntityManager();
+            long seq = changeSequence.next();
+            try {
+                em.getTransaction().begin();
+                List<Integer> found = em.createNamedQuery("Person.existingIds", Integer.class)
+                        .setParameter("ids", chunk)
+                        .getResultList();
+                if (!found.isEmpty()) {
+                    Query update = em.createQuery(jpql).setParameter("ids", found);
+                    if (values != null) {
+                        values.forEach(update::setParameter);
+                    }
+                    if (delete) {
+                        found.forEach(id -> em.persist(new PersonTombstone(id, seq)));
+                    } else {
+                        update.setParameter("changeSeq", seq);
+                    }
+                    update.executeUpdate();
+                }
+                em.getTransaction().commit();
+                loads.forgetAll();
+
+                Set<Integer> foundIds = new HashSet<>(found);
+                for (Integer id : chunk) {
+                    if (foundIds.contains(id)) {
+                        result.getAffected().add(id);
+                        cache.invalidate(id);
+                    } else {
+                        result.getNotFound().add(id);
+                    }
+                }
+            } finally {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+                changeSequence.done(seq);
+                em.close();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Served from the cache when it can be. Concurrent calls for the same id
+     * that miss the cache share one query, see SingleFlight.
+     */
     @Override
     public PersonDTO getPerson(int id) throws PersonNotFoundException {
+        PersonDTO cached = cache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        return loads.run(id, () -> loadPerson(id));
+    }
+
+    private PersonDTO loadPerson(int id) throws PersonNotFoundException {
+        long stamp = cache.stamp();
         EntityManager em = emf.createEntityManager();
         try {
+            //em.find is answered from EclipseLink's shared cache once the person has been read
             Person person = em.find(Person.class, id);
             if (person == null) {
                 throw new PersonNotFoundException("No person with provided id found");
             } else {
-                return new PersonDTO(person);
+                PersonDTO found = new PersonDTO(person);
+                cache.putIfUnchanged(found, stamp);
+                return found;
             }
         } finally {
             em.close();
         }
     }
 
+    /**
+     * Concurrent calls share one query and get the same PersonsDTO, see
+     * SingleFlight.
+     */
     @Override
     public PersonsDTO getAllPersons() {
+        return loads.run(ALL_KEY, this::loadAllPersons);
+    }
+
+    private PersonsDTO loadAllPersons() {
         EntityManager em = emf.createEntityManager();
         try {
-            TypedQuery<Person> query
-                    = em.createQuery("SELECT p FROM Person p", Person.class);
-            List<Person> personEntities = query.getResultList();
-            PersonsDTO all = new PersonsDTO(personEntities);
+            TypedQuery<PersonDTO> query
+                    = em.createNamedQuery("Person.dtoAll", PersonDTO.class);
+            PersonsDTO all = new PersonsDTO();
+            all.setAll(query.getResultList());
             return all;
         } finally {
             em.close();
         }
     }
 
+    /**
+     * Keyset pagination: returns at most limit persons with an id greater
+     * than after, ordered by id. Each call only reads one page, no matter
+     * how big the table is.
+     *
+     * @param after the id of the last person on the previous page (0 for the
+     * first page)
+     * @param limit the page size, clamped to 1..MAX_PAGE_SIZE
+     * @return the page, with next set if there are more persons
+     */
     @Override
-    public PersonDTO editPerson(PersonDTO p) throws PersonNotFoundException, MissingInputException {
-        if (p.getfName().length() == 0 || p.getlName().length() == 0) {
-            throw new MissingInputException("First name and/or last name is missing");
+    public PersonsDTO getPersonsPage(int after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        //Concurrent calls for the same page share one query, see SingleFlight
+        return loads.run("page:" + after + ":" + pageSize, () -> loadPersonsPage(after, pageSize));
+    }
+
+    private PersonsDTO loadPersonsPage(int after, int pageSize) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<PersonDTO> query
+                    = em.createNamedQuery("Person.dtoPage", PersonDTO.class);
+            query.setParameter("after", after);
+            //Fetch one extra row to find out if there is a next page
+            query.setMaxResults(pageSize + 1);
+            return toPage(query.getResultList(), pageSize);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * The change feed: the persons added, changed or deleted since a token
+     * from an earlier call, so a client can keep a copy of the table in step
+     * without reading all of it again. Every write stamps its rows with a
+     * number from the ChangeSequence, and deletes leave a PersonTombstone, so
+     * this reads a range of idx_person_change_seq and
+     * idx_tombstone_change_seq, and the cost follows the number of changes,
+     * not the size of the table.
+     *
+     * A person changed twice is only returned once, as it is now. Changes of
+     * transactions still running are left for the next call, see
+     * ChangeSequence.horizon.
+     *
+     * @param since next from the previous call, or null to start from the
+     * beginning, which returns every person
+     * @param limit the most persons and deletes to return, clamped to
+     * 1..MAX_PAGE_SIZE
+     * @return the changes, ordered by when they were made
+     * @throws MissingInputException if since is not a token from this feed
+     */
+    @Override
+    public ChangesDTO getChanges(String since, int limit) throws MissingInputException {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        //The position is a change sequence number and an id, "seq" alone means after every id
+        long seq = -1;
+        int id = Integer.MAX_VALUE;
+        if (since != null && !since.isEmpty()) {
+            try {
+                int dot = since.indexOf('.');
+                seq = Long.parseLong(dot < 0 ? since : since.substring(0, dot));
+                id = dot < 0 ? Integer.MAX_VALUE : Integer.parseInt(since.substring(dot + 1));
+            } catch (NumberFormatException ex) {
+                throw new MissingInputException("Not a valid since token");
+            }
+        }
+        long horizon = changeSequence.horizon();
+        EntityManager em = emf.createEntityManager();
+        List<Object[]> persons;
+        List<Object[]> tombstones;
+        try {
+            //Fetch one extra row to find out if there are more changes
+            persons = em.createNamedQuery("Person.changes", Object[].class)
+                    .setParameter("seq", seq).setParameter("id", id).setParameter("horizon", horizon)
+                    .setMaxResults(pageSize + 1)
+                    .getResultList();
+            tombstones = em.createNamedQuery("PersonTombstone.changes", Object[].class)
+                    .setParameter("seq", seq).setParameter("id", id).setParameter("horizon", horizon)
+                    .setMaxResults(pageSize + 1)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+        //Merge the two, both are ordered by change sequence number and id
+        ChangesDTO result = new ChangesDTO();
+        int p = 0;
+        int t = 0;
+        Object[] last = null;
+        for (int taken = 0; taken < pageSize && (p < persons.size() || t < tombstones.size()); taken++) {
+            if (t == tombstones.size() || (p < persons.size() && compareChange(persons.get(p), tombstones.get(t)) < 0)) {
+                Object[] row = persons.get(p++);
+                result.getChanged().add(new PersonDTO((Integer) row[1], (String) row[2], (String) row[3], (String) row[4],
+                        (Integer) row[5], (Date) row[6]));
+                last = row;
+            } else {
+                Object[] row = tombstones.get(t++);
+                result.getDeleted().add((Integer) row[1]);
+                last = row;
+            }
+        }
+        result.setMore(p < persons.size() || t < tombstones.size());
+        if (result.isMore()) {
+            result.setNext(last[0] + "." + last[1]);
+        } else {
+            //Everything up to the horizon has been seen
+            result.setNext(String.valueOf(Math.max(horizon, seq)));
+        }
+        return result;
+    }
+
+    //Orders rows of the change queries, which start with the change sequence number and the id
+    private static int compareChange(Object[] a, Object[] b) {
+        int bySeq = Long.compare((Long) a[0], (Long) b[0]);
+        return bySeq != 0 ? bySeq : Integer.compare((Integer) a[1], (Integer) b[1]);
+    }
+
+    /**
+     * Finds the persons whose first name, last name and/or phone start with
+     * the given values. Only prefixes are matched, and the results are
+     * ordered like the index that serves the search (last name, first name
+     * or phone, then id), so the database reads a range of the index, in
+     * order, and stops after one page instead of reading the whole table.
+     *
+     * Pages are found by offset, not by id like getPersonsPage, because a
+     * "greater than id" condition makes the optimizer walk the primary key
+     * instead of the name index.
+     *
+     * @param firstName prefix of the first name, or null
+     * @param lastName prefix of the last name, or null
+     * @param phone prefix of the phone number, or null
+     * @param offset the number of matches to skip (next of the previous page)
+     * @param limit the page size, clamped to 1..MAX_PAGE_SIZE
+     * @return the page, with next set to the offset of the next page if
+     * there are more matches
+     * @throws MissingInputException if no prefix is given
+     */
+    @Override
+    public PersonsDTO searchPersons(String firstName, String lastName, String phone, int offset, int limit) throws MissingInputException {
+        Map<String, String> prefixes = new LinkedHashMap<>();
+        if (lastName != null && !lastName.isEmpty()) {
+            prefixes.put("lastName", lastName);
+        }
+        if (firstName != null && !firstName.isEmpty()) {
+            prefixes.put("firstName", firstName);
+        }
+        if (phone != null && !phone.isEmpty()) {
+            prefixes.put("phone", phone);
+        }
+        if (prefixes.isEmpty()) {
+            throw new MissingInputException("Provide firstName, lastName and/or phone to search for");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        int skip = Math.max(0, offset);
+        StringBuilder jpql = new StringBuilder("SELECT NEW dto.PersonDTO(p.id, p.firstName, p.lastName, p.phone, p.version, p.lastEdited)"
+                + " FROM Person p WHERE ");
+        prefixes.keySet().forEach(field -> jpql.append("p.").append(field).append(" LIKE :").append(field).append(" ESCAPE '!' AND "));
+        jpql.setLength(jpql.length() - " AND ".length());
+        //The order of idx_person_name, idx_person_first_name or idx_person_phone
+        if (prefixes.containsKey("lastName")) {
+            jpql.append(" ORDER BY p.lastName, p.firstName, p.id");
+        } else if (prefixes.containsKey("firstName")) {
+            jpql.append(" ORDER BY p.firstName, p.id");
+        } else {
+            jpql.append(" ORDER BY p.phone, p.id");
         }
         EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<PersonDTO> query = em.createQuery(jpql.toString(), PersonDTO.class);
+            prefixes.forEach((field, prefix) -> query.setParameter(field, likePrefix(prefix)));
+            query.setFirstResult(skip);
+            query.setMaxResults(pageSize + 1);
+            PersonsDTO page = toPage(query.getResultList(), pageSize);
+            if (page.getNext() != null) {
+                page.setNext(skip + pageSize);
+            }
+            return page;
+        } finally {
+            em.close();
+        }
+    }
+
+    /*
+     * A LIKE pattern matching values that start with prefix. % and _ in the
+     * prefix are matched as they are, not as wildcards. The escape character
+     * is ! and not \, which MySQL would also treat as a string escape.
+     */
+    static String likePrefix(String prefix) {
+        return prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
+
+    /**
+     * Type-ahead suggestions from the in-memory index, no database query is
+     * made. Every word of the query must be found in the first name, last
+     * name or phone. Words of three or more characters may be found anywhere
+     * in a field, shorter words only at its start.
+     *
+     * @param query the words typed so far, e.g. "jo han" or "4276"
+     * @param limit the number of suggestions, clamped to 1..MAX_SUGGEST_LIMIT
+     * @return the matching persons with the lowest ids, next is never set
+     * @throws MissingInputException if the query has no words
+     */
+    @Override
+    public PersonsDTO suggestPersons(String query, int limit) throws MissingInputException {
+        if (query == null || query.trim().isEmpty()) {
+            throw new MissingInputException("Provide the text to suggest persons for");
+        }
+        PersonsDTO suggestions = new PersonsDTO();
+        suggestions.setAll(searchIndex.suggest(query, Math.max(1, Math.min(limit, MAX_SUGGEST_LIMIT))));
+        return suggestions;
+    }
+
+    //Cuts the extra row fetched by the page queries off, and sets next if it was there
+    private static PersonsDTO toPage(List<PersonDTO> persons, int pageSize) {
+        boolean hasNext = persons.size() > pageSize;
+        if (hasNext) {
+            persons = persons.subList(0, pageSize);
+        }
+        PersonsDTO page = new PersonsDTO();
+        page.setAll(persons);
+        if (hasNext) {
+            page.setNext(persons.get(pageSize - 1).getId());
+        }
+        return page;
+    }
+
+    /**
+     * Hands every person, ordered by id, to the given action while the rows
+     * are read through a forward-only database cursor. Only the current fetch
+     * of STREAM_FETCH_SIZE rows is held in memory, and no entities are
+     * built, so this works for any table size.
+     *
+     * On MySQL the fetch size is only honoured when the connection string
+     * has useCursorFetch=true, otherwise the driver reads the whole result
+     * into memory first.
+     *
+     * @param action called once for each person, in id order
+     */
+    @Override
+    public void forEachPerson(Consumer<PersonDTO> action) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            Query query = em.createNamedQuery("Person.dtoOrdered");
+            query.setHint(QueryHints.CURSOR, HintValues.TRUE);
+            query.setHint(QueryHints.JDBC_FETCH_SIZE, STREAM_FETCH_SIZE);
+            CursoredStream cursor = (CursoredStream) query.getSingleResult();
+            try {
+                while (cursor.hasNext()) {
+                    action.accept((PersonDTO) cursor.next());
+                    //Let the cursor forget the rows we are done with
+                    cursor.releasePrevious();
+                }
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public PersonDTO editPerson(PersonDTO p) throws PersonNotFoundException, MissingInputException {
+        checkNames(p.getfName(), p.getlName());
+        EntityManager em = emf.createEntityManager();
+        long seq = changeSequence.next();
         try {
             em.getTransaction().begin();
 
@@ -130,12 +931,21 @@ public class PersonFacade implements IPersonFacade {
                 person.setFirstName(p.getfName());
                 person.setLastName(p.getlName());
                 person.setPhone(p.getPhone());
+                person.setChangeSeq(seq);
 
                 em.getTransaction().commit();
+                loads.forgetAll();
 
-                return new PersonDTO(person);
+                PersonDTO edited = new PersonDTO(person);
+                cache.invalidate(edited.getId());
+                searchIndex.put(edited);
+                return edited;
             }
         } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            changeSequence.done(seq);
             em.close();
         }
     }
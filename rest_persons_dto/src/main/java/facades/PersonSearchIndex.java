@@ -0,0 +1,334 @@
+package facades;
+
+import dto.PersonDTO;
+import dto.SearchIndexStatsDTO;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process trigram index over the names and phone numbers of all persons,
+ * used by PersonFacade for type-ahead suggestions.
+ *
+ * Every field is lower cased and split into the three character sequences
+ * (trigrams) it contains. For each trigram the index keeps the ids of the
+ * persons that have it, as a sorted int array. A query word of three or more
+ * characters matches persons that have all of its trigrams, and the
+ * candidates are then checked against the actual text. Shorter words match
+ * the start of a field, using a marker for "start of field" as the first
+ * character of the gram.
+ *
+ * The ids of removed persons are remembered for as long as the index lives,
+ * 4 bytes each. Ids are never handed out again, so a put for a removed id is
+ * always a late write that lost a race with the delete, and is ignored.
+ *
+ * The persons are kept as PersonDTO's and handed out as they are, so callers
+ * must treat them as read-only. Reads and writes are guarded by a read/write
+ * lock, so many suggestions can run at once.
+ */
+public class PersonSearchIndex {
+
+    //Marks the start of a field, so "^jo" is a different gram than "jo" inside a word
+    private static final char START = '\u0001';
+
+    private final Map<Long, Postings> grams = new HashMap<>();
+    private final Map<Integer, PersonDTO> persons = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    //The ids of the removed persons
+    private final Postings removed = new Postings();
+
+    private volatile long buildMillis;
+
+    //A sorted, growable array of person ids
+    private static class Postings {
+
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] < id) {
+                //New persons get the highest id so far, so this is the usual case
+                append(id);
+                return;
+            }
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            append(0);
+            System.arraycopy(ids, at, ids, at + 1, size - 1 - at);
+            ids[at] = id;
+        }
+
+        private void append(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                System.arraycopy(ids, at + 1, ids, at, size - 1 - at);
+                size--;
+            }
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+
+    private static long gram(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static String[] fields(PersonDTO p) {
+        return new String[]{normalize(p.getfName()), normalize(p.getlName()), normalize(p.getPhone())};
+    }
+
+    //The grams of a field: the first character after the start marker, and every trigram
+    private static void addGrams(String field, Set<Long> into) {
+        if (field.isEmpty()) {
+            return;
+        }
+        String s = START + field;
+        into.add(gram((char) 0, s.charAt(0), s.charAt(1)));
+        for (int i = 0; i + 3 <= s.length(); i++) {
+            into.add(gram(s.charAt(i), s.charAt(i + 1), s.charAt(i + 2)));
+        }
+    }
+
+    private static Set<Long> gramsOf(PersonDTO p) {
+        Set<Long> result = new HashSet<>();
+        for (String field : fields(p)) {
+            addGrams(field, result);
+        }
+        return result;
+    }
+
+    //The grams a person must have to match a query word
+    private static List<Long> gramsOfWord(String word) {
+        List<Long> result = new ArrayList<>();
+        if (word.length() == 1) {
+            result.add(gram((char) 0, START, word.charAt(0)));
+        } else if (word.length() == 2) {
+            result.add(gram(START, word.charAt(0), word.charAt(1)));
+        } else {
+            for (int i = 0; i + 3 <= word.length(); i++) {
+                result.add(gram(word.charAt(i), word.charAt(i + 1), word.charAt(i + 2)));
+            }
+        }
+        return result;
+    }
+
+    //Rules out the false positives of the grams, e.g. "abcab" has all the trigrams of "cabc"
+    private static boolean matches(PersonDTO p, String[] words) {
+        String[] fields = fields(p);
+        for (String word : words) {
+            boolean found = false;
+            for (String field : fields) {
+                if (word.length() < 3 ? field.startsWith(word) : field.contains(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a person, or replaces the indexed copy. A copy with a lower
+     * version than the one already indexed is ignored, so writes that finish
+     * out of order cannot put back old names. So is a person that has been
+     * removed, so a write that finishes after the delete cannot put it back.
+     */
+    public void put(PersonDTO person) {
+        lock.writeLock().lock();
+        try {
+            link(person);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void link(PersonDTO person) {
+        if (removed.contains(person.getId())) {
+            return;
+        }
+        PersonDTO old = persons.get(person.getId());
+        if (old != null) {
+            if (old.getVersion() != null && person.getVersion() != null && person.getVersion() < old.getVersion()) {
+                return;
+            }
+            unlink(old);
+        }
+        persons.put(person.getId(), person);
+        for (long g : gramsOf(person)) {
+            grams.computeIfAbsent(g, k -> new Postings()).add(person.getId());
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            PersonDTO old = persons.remove(id);
+            if (old != null) {
+                unlink(old);
+            }
+            removed.add(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unlink(PersonDTO old) {
+        for (long g : gramsOf(old)) {
+            Postings postings = grams.get(g);
+            if (postings != null) {
+                postings.remove(old.getId());
+                if (postings.size == 0) {
+                    grams.remove(g);
+                }
+            }
+        }
+    }
+
+    /**
+     * Empties the index and forgets the removed ids.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            grams.clear();
+            persons.clear();
+            removed.ids = new int[4];
+            removed.size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Empties the index for a full build from the database, which then puts
+     * every person. The removed ids are kept, so a person that was read
+     * before it was deleted is not put back.
+     */
+    public void startBuild() {
+        lock.writeLock().lock();
+        try {
+            grams.clear();
+            persons.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ends the build started with startBuild, and records how long it took,
+     * for the stats.
+     */
+    public void finishBuild(long buildMillis) {
+        this.buildMillis = buildMillis;
+    }
+
+    /**
+     * Finds the persons matching every word of the query, e.g. "ha 1337"
+     * finds persons with a name or phone starting with "ha" and a field
+     * containing "1337".
+     *
+     * @param query words separated by spaces, words of one or two characters
+     * only match the start of a field
+     * @param limit the maximum number of persons to return
+     * @return the matching persons, ordered by id
+     */
+    public List<PersonDTO> suggest(String query, int limit) {
+        String[] words = normalize(query).trim().split("\\s+");
+        List<Long> wanted = new ArrayList<>();
+        for (String word : words) {
+            wanted.addAll(gramsOfWord(word));
+        }
+        List<PersonDTO> result = new ArrayList<>();
+        if (wanted.isEmpty()) {
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[wanted.size()];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = grams.get(wanted.get(i));
+                if (lists[i] == null) {
+                    return result;
+                }
+            }
+            //Walk the shortest list and look the ids up in the others
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+            Postings shortest = lists[0];
+            for (int i = 0; i < shortest.size && result.size() < limit; i++) {
+                int id = shortest.ids[i];
+                boolean inAll = true;
+                for (int j = 1; j < lists.length && inAll; j++) {
+                    inAll = lists[j].contains(id);
+                }
+                if (inAll) {
+                    PersonDTO p = persons.get(id);
+                    if (matches(p, words)) {
+                        result.add(p);
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The memory use is estimated from the sizes of the arrays and strings,
+     * and the usual object sizes of a 64 bit JVM with compressed pointers
+     * (16 byte headers, 4 byte references, 32 byte HashMap entries).
+     */
+    public SearchIndexStatsDTO getStats() {
+        lock.readLock().lock();
+        try {
+            long postings = 0;
+            long bytes = 0;
+            for (Postings p : grams.values()) {
+                postings += p.size;
+                //map entry + Long key + Postings + int[]
+                bytes += 32 + 16 + 24 + 16 + 4L * p.ids.length;
+            }
+            for (PersonDTO p : persons.values()) {
+                //map entry + Integer key + PersonDTO + 3 strings
+                bytes += 32 + 16 + 40 + stringBytes(p.getfName()) + stringBytes(p.getlName()) + stringBytes(p.getPhone());
+            }
+            //The removed ids
+            bytes += 16 + 4L * removed.ids.length;
+            //The bucket arrays of the two maps
+            bytes += 4L * (Integer.highestOneBit(Math.max(1, grams.size())) * 2 + Integer.highestOneBit(Math.max(1, persons.size())) * 2);
+            return new SearchIndexStatsDTO(persons.size(), grams.size(), postings, bytes, buildMillis);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long stringBytes(String s) {
+        return s == null ? 0 : 40 + s.length();
+    }
+}
@@ -0,0 +1,122 @@
+package facades;
+
+import dto.CoalescingStatsDTO;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces identical concurrent reads, used by PersonFacade. The first
+ * caller for a key runs the load, callers that come while it runs wait for
+ * it and get the same result, or the same exception. So a burst of requests
+ * for the same person runs one query instead of hundreds.
+ *
+ * A caller that has waited timeoutMillis for someone else's load gives up on
+ * it and runs the load itself, so a stuck query does not hold up everyone
+ * who asked after it.
+ *
+ * Results are shared between callers, so they must be treated as read-only.
+ * A load is only joined while it runs, nothing is kept afterwards. Writers
+ * call forgetAll after committing, so no one joins a load that may have
+ * read the data from before the write.
+ */
+public class SingleFlight {
+
+    /**
+     * A load that may throw a checked exception, like a facade method.
+     */
+    @FunctionalInterface
+    public interface Loader<V, E extends Exception> {
+
+        V load() throws E;
+    }
+
+    private final long timeoutMillis;
+    private final Map<Object, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * @param timeoutMillis how long a caller waits for someone else's load
+     * before running it itself
+     */
+    public SingleFlight(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Creates a SingleFlight configured from the environment variable
+     * SINGLE_FLIGHT_TIMEOUT_MS (default 5000).
+     */
+    public static SingleFlight fromEnvironment() {
+        String value = System.getenv("SINGLE_FLIGHT_TIMEOUT_MS");
+        return new SingleFlight(value == null ? 5000 : Integer.parseInt(value.trim()));
+    }
+
+    /**
+     * Runs the load, or waits for the one already running for the key.
+     *
+     * @param key what is loaded, equal keys must have loads of the same
+     * result and exception types
+     */
+    @SuppressWarnings("unchecked")
+    public <V, E extends Exception> V run(Object key, Loader<V, E> loader) throws E {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = flights.putIfAbsent(key, flight);
+        if (running == null) {
+            return (V) lead(key, flight, loader);
+        }
+        coalesced.increment();
+        try {
+            return (V) running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (E) cause;
+        } catch (TimeoutException ex) {
+            timeouts.increment();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        loads.increment();
+        return loader.load();
+    }
+
+    private <V, E extends Exception> Object lead(Object key, CompletableFuture<Object> flight, Loader<V, E> loader) throws E {
+        loads.increment();
+        try {
+            V result = loader.load();
+            flights.remove(key, flight);
+            flight.complete(result);
+            return result;
+        } catch (Exception | Error ex) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Stops new callers from joining the loads running now, they will start
+     * their own.
+     */
+    public void forgetAll() {
+        if (!flights.isEmpty()) {
+            flights.clear();
+        }
+    }
+
+    public CoalescingStatsDTO getStats() {
+        return new CoalescingStatsDTO(flights.size(), loads.sum(), coalesced.sum(), timeouts.sum());
+    }
+}
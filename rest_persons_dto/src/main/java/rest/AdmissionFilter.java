@@ -0,0 +1,197 @@
+package rest;
+
+import dto.AdmissionStatsDTO;
+import exceptions.ErrorResponses;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Priority;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import utils.ConcurrencyLimiter;
+import utils.TokenBucket;
+
+/**
+ * Admission control in front of PersonResource and AsyncPersonResource.
+ * When the database slows down, requests are turned away at once with a 503
+ * and Retry-After, instead of queueing in the container and making every
+ * request slow.
+ *
+ * Reads (GET and HEAD) and writes each have a ConcurrencyLimiter, so a pile
+ * of slow writes does not stop the reads. The limits adapt: they grow while
+ * answers are quick, and shrink when an answer takes longer than
+ * ADMISSION_LATENCY_MS or is a 503 from DbExecutor.
+ *
+ * A client can also be held to a rate with a TokenBucket, answered with a
+ * 429 and Retry-After when it goes over. Clients are told apart by the last
+ * address in RATE_LIMIT_CLIENT_HEADER, the one the proxy in front appends;
+ * the addresses before it are sent by the client and can be anything.
+ * Requests without the header share one bucket. At most
+ * RATE_LIMIT_MAX_CLIENTS buckets are kept: when there are that many, the
+ * full ones (idle clients) are dropped, at most once a second, and clients
+ * that still do not fit share one overflow bucket.
+ *
+ * Configured from environment variables:
+ * ADMISSION_CONTROL         - "false" turns the limiters off
+ * ADMISSION_READ_LIMIT      - reads at once to start with (default 40)
+ * ADMISSION_WRITE_LIMIT     - writes at once to start with (default 16)
+ * ADMISSION_MIN_LIMIT       - lowest limit (default 2)
+ * ADMISSION_MAX_LIMIT       - highest limit (default 200)
+ * ADMISSION_LATENCY_MS      - slower answers shrink the limit (default 250)
+ * RATE_LIMIT_PER_SECOND     - requests a second per client, 0 turns it off (default 0)
+ * RATE_LIMIT_BURST          - requests a client may send at once (default 2 x RATE_LIMIT_PER_SECOND)
+ * RATE_LIMIT_CLIENT_HEADER  - header that names the client (default X-Forwarded-For)
+ * RATE_LIMIT_MAX_CLIENTS    - most buckets kept, see above (default 10000)
+ */
+@Provider
+@Priority(Priorities.USER + 100)
+public class AdmissionFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final int MIN_LIMIT = intFromEnv("ADMISSION_MIN_LIMIT", 2);
+    private static final int MAX_LIMIT = intFromEnv("ADMISSION_MAX_LIMIT", 200);
+    private static final long LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(intFromEnv("ADMISSION_LATENCY_MS", 250));
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final String LIMITER = AdmissionFilter.class.getName() + ".limiter";
+    private static final String START = AdmissionFilter.class.getName() + ".start";
+
+    //The filter Jersey made, whose stats getStats returns
+    private static volatile AdmissionFilter registered;
+
+    private final boolean enabled;
+    private final ConcurrencyLimiter reads;
+    private final ConcurrencyLimiter writes;
+    private final int rate;
+    private final int burst;
+    private final int maxClients;
+    private final String clientHeader;
+    private final Map<String, TokenBucket> clients = new ConcurrentHashMap<>();
+    private final TokenBucket overflow;
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+    private final LongAdder rateLimited = new LongAdder();
+
+    private static int intFromEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Configured from the environment variables above. Jersey makes one per
+     * application.
+     */
+    public AdmissionFilter() {
+        this(!"false".equalsIgnoreCase(System.getenv("ADMISSION_CONTROL")),
+                new ConcurrencyLimiter("reads", intFromEnv("ADMISSION_READ_LIMIT", 40), MIN_LIMIT, MAX_LIMIT, LATENCY_NANOS),
+                new ConcurrencyLimiter("writes", intFromEnv("ADMISSION_WRITE_LIMIT", 16), MIN_LIMIT, MAX_LIMIT, LATENCY_NANOS),
+                intFromEnv("RATE_LIMIT_PER_SECOND", 0),
+                intFromEnv("RATE_LIMIT_BURST", 2 * intFromEnv("RATE_LIMIT_PER_SECOND", 0)),
+                intFromEnv("RATE_LIMIT_MAX_CLIENTS", 10000),
+                System.getenv("RATE_LIMIT_CLIENT_HEADER") != null ? System.getenv("RATE_LIMIT_CLIENT_HEADER") : "X-Forwarded-For");
+        registered = this;
+    }
+
+    //For the tests
+    AdmissionFilter(boolean enabled, ConcurrencyLimiter reads, ConcurrencyLimiter writes, int rate, int burst,
+            int maxClients, String clientHeader) {
+        this.enabled = enabled;
+        this.reads = reads;
+        this.writes = writes;
+        this.rate = rate;
+        this.burst = burst;
+        this.maxClients = maxClients;
+        this.clientHeader = clientHeader;
+        this.overflow = new TokenBucket(rate, Math.max(1, burst));
+    }
+
+    /**
+     * @return the stats of the filter in use, or of a new one if no
+     * application has started yet
+     */
+    public static AdmissionStatsDTO getStats() {
+        AdmissionFilter filter = registered;
+        return (filter != null ? filter : new AdmissionFilter()).stats();
+    }
+
+    AdmissionStatsDTO stats() {
+        return new AdmissionStatsDTO(enabled, reads.getStats(), writes.getStats(), rate, burst, clients.size(),
+                rateLimited.sum());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        ResourceMethod method = ((ExtendedUriInfo) request.getUriInfo()).getMatchedResourceMethod();
+        if (method == null || !isLimited(method.getInvocable().getHandler().getHandlerClass())) {
+            return;
+        }
+        if (rate > 0) {
+            long wait = bucket(request.getHeaderString(clientHeader)).tryTake();
+            if (wait > 0) {
+                rateLimited.increment();
+                request.abortWith(ErrorResponses.status(429, "Too many requests, slow down")
+                        .header("Retry-After", Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999999999)))
+                        .build());
+                return;
+            }
+        }
+        if (!enabled) {
+            return;
+        }
+        String httpMethod = request.getMethod();
+        ConcurrencyLimiter limiter = HttpMethod.GET.equals(httpMethod) || HttpMethod.HEAD.equals(httpMethod) ? reads : writes;
+        if (!limiter.tryAcquire()) {
+            request.abortWith(ErrorResponses.status(503, "The server is busy, try again")
+                    .header("Retry-After", 1)
+                    .build());
+            return;
+        }
+        request.setProperty(LIMITER, limiter);
+        request.setProperty(START, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        ConcurrencyLimiter limiter = (ConcurrencyLimiter) request.getProperty(LIMITER);
+        if (limiter == null) {
+            return;
+        }
+        //Only release once, should the response filters run again
+        request.removeProperty(LIMITER);
+        limiter.release((Long) request.getProperty(START), response.getStatus() == 503);
+    }
+
+    private static boolean isLimited(Class<?> resource) {
+        return resource == PersonResource.class || resource == AsyncPersonResource.class;
+    }
+
+    //The last address, appended by the proxy, the ones before it come from the client
+    static String clientOf(String header) {
+        return header == null ? "" : header.substring(header.lastIndexOf(',') + 1).trim();
+    }
+
+    private TokenBucket bucket(String header) {
+        String client = clientOf(header);
+        TokenBucket bucket = clients.get(client);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (clients.size() >= maxClients) {
+            long next = nextSweep.get();
+            if (System.nanoTime() - next >= 0 && nextSweep.compareAndSet(next, System.nanoTime() + SWEEP_INTERVAL_NANOS)) {
+                clients.values().removeIf(TokenBucket::isFull);
+            }
+            if (clients.size() >= maxClients) {
+                return overflow;
+            }
+        }
+        return clients.computeIfAbsent(client, c -> new TokenBucket(rate, Math.max(1, burst)));
+    }
+}
@@ -1,5 +1,7 @@
 package rest;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
 import javax.ws.rs.core.Application;
 
@@ -13,6 +15,16 @@ public class ApplicationConfig extends Application {
         return resources;
     }
 
+    /*
+     * Jersey always registers its JSON-B provider, which would compete with
+     * GsonProvider for application/json. Naming another JSON feature turns
+     * JSON-B off.
+     */
+    @Override
+    public Map<String, Object> getProperties() {
+        return Collections.singletonMap("jersey.config.server.jsonFeature", GsonProvider.class.getSimpleName());
+    }
+
     /**
      * Do not modify addRestResourceClasses() method.
      * It is automatically populated with
@@ -22,9 +34,21 @@ public class ApplicationConfig extends Application {
     private void addRestResourceClasses(Set<Class<?>> resources) {
         resources.add(exceptions.GenericExceptionMapper.class);
         resources.add(exceptions.MissingInputExceptionMapper.class);
+        resources.add(exceptions.PersonConflictExceptionMapper.class);
         resources.add(exceptions.PersonNotFoundExceptionMapper.class);
         resources.add(org.glassfish.jersey.server.wadl.internal.WadlResource.class);
+        resources.add(rest.AdmissionFilter.class);
+        resources.add(rest.AsyncPersonResource.class);
+        resources.add(rest.CompressionInterceptor.class);
+        resources.add(rest.GsonProvider.class);
+        resources.add(rest.HealthResource.class);
+        resources.add(rest.MetricsFilter.class);
+        resources.add(rest.MetricsResource.class);
+        resources.add(rest.PersonBinaryProvider.class);
         resources.add(rest.PersonResource.class);
+        resources.add(rest.SqlProfileFilter.class);
+        resources.add(rest.StartupListener.class);
+        resources.add(rest.StatsResource.class);
         resources.add(rest.TestResource.class);
     }
     
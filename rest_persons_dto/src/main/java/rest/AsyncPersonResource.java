@@ -0,0 +1,120 @@
+package rest;
+
+import dto.PersonDTO;
+import exceptions.ErrorResponses;
+import facades.PersonFacade;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import utils.DbExecutor;
+import utils.EMF_Creator;
+
+/**
+ * The same operations as PersonResource, but the facade calls run on the
+ * bounded DbExecutor and the container's request thread is released right
+ * away. When the database is slow, requests get a 503 after
+ * DB_REQUEST_TIMEOUT_MS, or straight away if the executor is full, instead of
+ * using up the container's worker threads.
+ */
+@Path("async/person")
+public class AsyncPersonResource {
+
+    private static final PersonFacade FACADE = PersonFacade.getPersonFacade(EMF_Creator.createEntityManagerFactory());
+
+    /*
+     * Runs the work on the database executor and resumes the request with
+     * its result. Exceptions are passed on to the exception mappers, just
+     * like for PersonResource. Work that has not started when the request
+     * times out is skipped, the client already has its answer.
+     *
+     * A write that has started may still commit after the timeout, so its
+     * 503 has no Retry-After: a client retrying a POST could add the person
+     * twice.
+     */
+    private static void run(AsyncResponse response, boolean write, Callable<Object> work) {
+        response.setTimeout(DbExecutor.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        response.setTimeoutHandler(r -> r.resume(write
+                ? ErrorResponses.of(503, "The database did not answer in time, the change may still be saved")
+                : unavailable("The database did not answer in time")));
+        try {
+            DbExecutor.execute(() -> {
+                if (response.isDone()) {
+                    return;
+                }
+                try {
+                    response.resume(work.call());
+                } catch (Exception ex) {
+                    response.resume(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            response.resume(unavailable("Too many requests waiting for the database"));
+        }
+    }
+
+    private static Response unavailable(String message) {
+        return ErrorResponses.status(503, message)
+                .header("Retry-After", 1)
+                .build();
+    }
+
+    @Path("count")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    public void getCount(@Suspended AsyncResponse response) {
+        run(response, false, () -> "{\"count\":" + FACADE.getPersonCount() + "}");
+    }
+
+    @Path("all")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    public void getAllPersons(@QueryParam("after") @DefaultValue("0") int after,
+            @QueryParam("limit") @DefaultValue("" + PersonFacade.DEFAULT_PAGE_SIZE) int limit,
+            @Suspended AsyncResponse response) {
+        run(response, false, () -> FACADE.getPersonsPage(after, limit));
+    }
+
+    @Path("{id}")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    public void getPerson(@PathParam("id") int id, @Suspended AsyncResponse response) {
+        run(response, false, () -> FACADE.getPerson(id));
+    }
+
+    @POST
+    @Consumes({MediaType.APPLICATION_JSON})
+    @Produces({MediaType.APPLICATION_JSON})
+    public void addPerson(PersonDTO pDTO, @Suspended AsyncResponse response) {
+        run(response, true, () -> FACADE.addPerson(pDTO.getfName(), pDTO.getlName(), pDTO.getPhone()));
+    }
+
+    @Path("{id}")
+    @PUT
+    @Consumes({MediaType.APPLICATION_JSON})
+    @Produces({MediaType.APPLICATION_JSON})
+    public void editPerson(@PathParam("id") int id, PersonDTO pDTO, @Suspended AsyncResponse response) {
+        pDTO.setId(id);
+        run(response, true, () -> FACADE.editPerson(pDTO));
+    }
+
+    @Path("{id}")
+    @DELETE
+    @Produces({MediaType.APPLICATION_JSON})
+    public void deletePerson(@PathParam("id") int id, @Suspended AsyncResponse response) {
+        run(response, true, () -> FACADE.deletePerson(id));
+    }
+}
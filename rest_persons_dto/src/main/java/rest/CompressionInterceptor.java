@@ -0,0 +1,260 @@
+package rest;
+
+import dto.CompressionStatsDTO;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Compresses response bodies with gzip or deflate, whichever the client
+ * prefers in Accept-Encoding. Bodies smaller than COMPRESS_MIN_BYTES are
+ * sent as they are, since compressing them saves little or even grows them.
+ * The first COMPRESS_MIN_BYTES of a body are held back until we know which
+ * it is, after that the body is compressed as it is written, so streamed
+ * responses stay streamed.
+ *
+ * GET responses with an ETag (persons and pages of persons) go through a
+ * ResponseBodyCache, which keeps the compressed bytes next to the plain ones.
+ *
+ * Configured from environment variables:
+ * COMPRESS_MIN_BYTES         - smallest body to compress (default 1024)
+ * RESPONSE_CACHE_SIZE        - bodies kept in the cache (default 256, 0 turns it off)
+ * RESPONSE_CACHE_MAX_BYTES   - largest body kept in the cache (default 1048576)
+ */
+@Provider
+public class CompressionInterceptor implements WriterInterceptor {
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private static final int MIN_BYTES = intFromEnv("COMPRESS_MIN_BYTES", 1024);
+    private static final ResponseBodyCache CACHE = new ResponseBodyCache(
+            intFromEnv("RESPONSE_CACHE_SIZE", 256), intFromEnv("RESPONSE_CACHE_MAX_BYTES", 1024 * 1024));
+
+    private static final AtomicLong COMPRESSED = new AtomicLong();
+    private static final AtomicLong UNCOMPRESSED = new AtomicLong();
+    private static final AtomicLong BYTES_BEFORE = new AtomicLong();
+    private static final AtomicLong BYTES_AFTER = new AtomicLong();
+
+    @Context
+    private HttpHeaders requestHeaders;
+    @Context
+    private Request request;
+    @Context
+    private UriInfo uriInfo;
+
+    private static int intFromEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public static CompressionStatsDTO getStats() {
+        return new CompressionStatsDTO(MIN_BYTES, COMPRESSED.get(), UNCOMPRESSED.get(), BYTES_BEFORE.get(), BYTES_AFTER.get(),
+                CACHE.size(), CACHE.getHits(), CACHE.getMisses());
+    }
+
+    /*
+     * The encoding with the highest q value in Accept-Encoding, gzip wins a
+     * tie. Null if the client accepts neither.
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        String best = null;
+        double bestQ = 0;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException ex) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals("x-gzip") || coding.equals("*")) {
+                coding = GZIP;
+            }
+            boolean known = coding.equals(GZIP) || coding.equals(DEFLATE);
+            if (known && q > 0 && (q > bestQ || (q == bestQ && coding.equals(GZIP)))) {
+                best = coding;
+                bestQ = q;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        if (headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            context.proceed();
+            return;
+        }
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String encoding = negotiate(requestHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+        Object etag = headers.getFirst(HttpHeaders.ETAG);
+        if (etag != null && CACHE.isEnabled() && "GET".equals(request.getMethod())) {
+            writeFromCache(context, encoding, ResponseBodyCache.key(uriInfo.getRequestUri().toString(), context.getMediaType(), etag));
+        } else if (encoding == null) {
+            UNCOMPRESSED.incrementAndGet();
+            context.proceed();
+        } else {
+            ThresholdOutputStream out = new ThresholdOutputStream(context.getOutputStream(), encoding, headers);
+            context.setOutputStream(out);
+            context.proceed();
+            out.finish();
+        }
+    }
+
+    private static void writeFromCache(WriterInterceptorContext context, String encoding, String key) throws IOException {
+        OutputStream out = context.getOutputStream();
+        ResponseBodyCache.Entry entry = CACHE.get(key);
+        if (entry == null) {
+            //Let the MessageBodyWriter serialize into a buffer, the body is kept for the next request
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            context.setOutputStream(buffer);
+            context.proceed();
+            context.setOutputStream(out);
+            entry = CACHE.put(key, buffer.toByteArray());
+        }
+        byte[] body = entry.plain();
+        if (encoding != null && body.length >= MIN_BYTES) {
+            context.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+            BYTES_BEFORE.addAndGet(body.length);
+            body = entry.encoded(encoding);
+            BYTES_AFTER.addAndGet(body.length);
+            COMPRESSED.incrementAndGet();
+        } else {
+            UNCOMPRESSED.incrementAndGet();
+        }
+        out.write(body);
+    }
+
+    /*
+     * Holds back the first MIN_BYTES of the body. If the body ends before
+     * that, it is written as it is, otherwise Content-Encoding is set and
+     * everything from then on goes through the compressor. Nothing reaches
+     * the container's stream before that decision, so the header can still
+     * be changed.
+     */
+    private static class ThresholdOutputStream extends OutputStream {
+
+        private final OutputStream target;
+        private final String encoding;
+        private final MultivaluedMap<String, Object> headers;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private DeflaterOutputStream compressor;
+        private boolean finished;
+        private long bytesIn;
+        private long bytesOut;
+
+        ThresholdOutputStream(OutputStream target, String encoding, MultivaluedMap<String, Object> headers) {
+            this.target = target;
+            this.encoding = encoding;
+            this.headers = headers;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            bytesIn += len;
+            if (compressor != null) {
+                compressor.write(b, off, len);
+            } else if (buffer != null) {
+                buffer.write(b, off, len);
+                if (buffer.size() >= MIN_BYTES) {
+                    startCompressing();
+                }
+            } else {
+                target.write(b, off, len);
+            }
+        }
+
+        private void startCompressing() throws IOException {
+            headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+            //Counts what goes to the client, syncFlush so a flush sends what has been compressed so far
+            OutputStream counting = new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    bytesOut++;
+                    target.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    bytesOut += len;
+                    target.write(b, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    target.flush();
+                }
+            };
+            compressor = encoding.equals(GZIP) ? new GZIPOutputStream(counting, 8192, true) : new DeflaterOutputStream(counting, true);
+            buffer.writeTo(compressor);
+            buffer = null;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            //While the body is still held back there is nothing to flush
+            if (finished) {
+                target.flush();
+            } else if (compressor != null) {
+                compressor.flush();
+            } else if (buffer == null) {
+                target.flush();
+            }
+        }
+
+        //Writes what is left, but leaves the container's stream open
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (compressor != null) {
+                //Frees the compressor's native memory, closing it does not close target
+                compressor.close();
+                COMPRESSED.incrementAndGet();
+                BYTES_BEFORE.addAndGet(bytesIn);
+                BYTES_AFTER.addAndGet(bytesOut);
+            } else {
+                if (buffer != null) {
+                    buffer.writeTo(target);
+                    buffer = null;
+                }
+                UNCOMPRESSED.incrementAndGet();
+            }
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+    }
+}
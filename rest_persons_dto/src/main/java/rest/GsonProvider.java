@@ -0,0 +1,100 @@
+package rest;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import dto.PersonDTO;
+import dto.PersonDTOAdapter;
+import dto.PersonsDTO;
+import dto.PersonsDTOAdapter;
+import exceptions.ExceptionDTO;
+import exceptions.ExceptionDTOAdapter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Reads and writes the JSON bodies of all resources with Gson, straight
+ * from and to the entity streams, so no JSON String is built per request.
+ * The output is compact, add ?pretty=true to a request to get it indented.
+ *
+ * PersonDTO, PersonsDTO and ExceptionDTO have hand-written TypeAdapters,
+ * other DTOs are handled by Gson's reflection. Resources that return a
+ * String still go through Jersey's own String writer.
+ */
+@Provider
+@Produces({MediaType.APPLICATION_JSON})
+@Consumes({MediaType.APPLICATION_JSON})
+public class GsonProvider implements MessageBodyWriter<Object>, MessageBodyReader<Object> {
+
+    public static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(PersonDTO.class, new PersonDTOAdapter())
+            .registerTypeAdapter(PersonsDTO.class, new PersonsDTOAdapter())
+            .registerTypeAdapter(ExceptionDTO.class, new ExceptionDTOAdapter())
+            .create();
+    private static final Gson PRETTY_GSON = GSON.newBuilder().setPrettyPrinting().create();
+
+    @Context
+    private UriInfo uriInfo;
+
+    private static boolean handles(Class<?> type, MediaType mediaType) {
+        return mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE)
+                && !CharSequence.class.isAssignableFrom(type)
+                && !StreamingOutput.class.isAssignableFrom(type)
+                && !InputStream.class.isAssignableFrom(type)
+                && !Reader.class.isAssignableFrom(type)
+                && type != byte[].class;
+    }
+
+    private boolean isPretty() {
+        return uriInfo != null && "true".equals(uriInfo.getQueryParameters().getFirst("pretty"));
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return handles(type, mediaType);
+    }
+
+    @Override
+    public long getSize(Object t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        Gson gson = isPretty() ? PRETTY_GSON : GSON;
+        JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(entityStream, StandardCharsets.UTF_8));
+        gson.toJson(t, genericType == null ? type : genericType, writer);
+        //Flush, but do not close the container's stream
+        writer.flush();
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return handles(type, mediaType);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        Reader reader = new InputStreamReader(entityStream, StandardCharsets.UTF_8);
+        return GSON.fromJson(reader, genericType == null ? type : genericType);
+    }
+}
@@ -0,0 +1,27 @@
+package rest;
+
+import dto.ReadinessDTO;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+
+@Path("health")
+public class HealthResource {
+
+    /**
+     * 200 once the persistence unit is deployed and warmed up (see
+     * StartupListener), 503 until then. Point the load balancer's readiness
+     * check here.
+     */
+    @Path("ready")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response isReady() {
+        ReadinessDTO readiness = StartupListener.getReadiness();
+        Response.Status status = readiness.isReady() ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE;
+        return Response.status(status).entity(readiness).build();
+    }
+}
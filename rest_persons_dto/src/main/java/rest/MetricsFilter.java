@@ -0,0 +1,110 @@
+package rest;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.server.model.ResourceMethod;
+
+/**
+ * Records the metrics of every request in RequestMetrics.
+ *
+ * The request filter runs once the resource method is known, and starts the
+ * clock. The response filter counts the status code. When there is a body,
+ * the entity stream is wrapped, so the time and size are recorded when the
+ * body has been written, after the message body writers and the
+ * CompressionInterceptor have run. Without a body they are recorded right
+ * away.
+ *
+ * The updates themselves take no locks and do not allocate. Per request
+ * there is the boxed start time and, for responses with a body, the stream
+ * wrapper.
+ */
+@Provider
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String ROUTE = MetricsFilter.class.getName() + ".route";
+    private static final String START = MetricsFilter.class.getName() + ".start";
+
+    /**
+     * @return the route of the request, or null if no resource method matched
+     */
+    static RequestMetrics.Route route(ContainerRequestContext request) {
+        return (RequestMetrics.Route) request.getProperty(ROUTE);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        ExtendedUriInfo uriInfo = (ExtendedUriInfo) request.getUriInfo();
+        ResourceMethod method = uriInfo.getMatchedResourceMethod();
+        if (method == null) {
+            return;
+        }
+        RequestMetrics.Route route = RequestMetrics.route(method, uriInfo.getMatchedTemplates());
+        route.started();
+        request.setProperty(ROUTE, route);
+        request.setProperty(START, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        RequestMetrics.Route route = route(request);
+        if (route == null) {
+            //No resource method matched (e.g. a 404), so the request filter did not run
+            RequestMetrics.unmatched(request.getMethod()).countStatus(response.getStatus());
+            return;
+        }
+        route.countStatus(response.getStatus());
+        long start = (Long) request.getProperty(START);
+        if (response.hasEntity()) {
+            response.setEntityStream(new CountingOutputStream(response.getEntityStream(), route, start));
+        } else {
+            route.finished(System.nanoTime() - start, 0);
+        }
+    }
+
+    //Counts the bytes written, and records the route's metrics when Jersey closes it
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private final RequestMetrics.Route route;
+        private final long start;
+        private long bytes;
+        private boolean closed;
+
+        CountingOutputStream(OutputStream out, RequestMetrics.Route route, long start) {
+            super(out);
+            this.route = route;
+            this.start = start;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            bytes += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+            } finally {
+                route.finished(System.nanoTime() - start, bytes);
+            }
+        }
+    }
+}
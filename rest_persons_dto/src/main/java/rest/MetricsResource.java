@@ -0,0 +1,145 @@
+package rest;
+
+import dto.AdmissionStatsDTO;
+import dto.CacheStatsDTO;
+import dto.CoalescingStatsDTO;
+import dto.CompressionStatsDTO;
+import dto.ExecutorStatsDTO;
+import dto.GroupCommitStatsDTO;
+import dto.LimiterStatsDTO;
+import dto.PoolStatsDTO;
+import dto.SearchIndexStatsDTO;
+import exceptions.ErrorLog;
+import facades.PersonFacade;
+import java.util.Map;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import utils.DbExecutor;
+import utils.EMF_Creator;
+import utils.SqlProfiler;
+
+/**
+ * The request metrics of every route, and the numbers behind /api/stats, in
+ * the Prometheus text format, for a Prometheus server to scrape.
+ */
+@Path("metrics")
+public class MetricsResource {
+
+    static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final PersonFacade FACADE = PersonFacade.getPersonFacade(EMF_Creator.createEntityManagerFactory());
+
+    @GET
+    @Produces({PROMETHEUS_TEXT})
+    public String getMetrics() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        RequestMetrics.writePrometheus(out);
+
+        CacheStatsDTO cache = FACADE.getCacheStats();
+        gauge(out, "person_cache_entries", "Persons in the cache in front of getPerson", cache.getSize());
+        counter(out, "person_cache_hits_total", "Cache hits", cache.getHits());
+        counter(out, "person_cache_misses_total", "Cache misses", cache.getMisses());
+        counter(out, "person_cache_evictions_total", "Persons evicted to make room", cache.getEvictions());
+        counter(out, "person_cache_expirations_total", "Persons dropped after their time to live", cache.getExpirations());
+
+        CoalescingStatsDTO coalescing = FACADE.getCoalescingStats();
+        gauge(out, "person_loads_in_flight", "Coalescable person reads running now", coalescing.getInFlight());
+        counter(out, "person_loads_total", "Coalescable person reads that went to the database", coalescing.getLoads());
+        counter(out, "person_loads_coalesced_total", "Person reads that waited for a read already running",
+                coalescing.getCoalesced());
+        counter(out, "person_loads_wait_timeouts_total", "Coalesced reads that gave up waiting and loaded themselves",
+                coalescing.getTimeouts());
+
+        GroupCommitStatsDTO groupCommit = FACADE.getGroupCommitStats();
+        if (groupCommit.isEnabled()) {
+            gauge(out, "person_group_commit_queued", "Added persons waiting for the next group commit", groupCommit.getQueued());
+            counter(out, "person_group_commit_commits_total", "Transactions committed by the group commit writer",
+                    groupCommit.getCommits());
+            counter(out, "person_group_commit_persons_total", "Persons saved by the group commit writer", groupCommit.getPersons());
+            counter(out, "person_group_commit_retries_total", "Batches that failed and were written one person at a time",
+                    groupCommit.getRetries());
+        }
+
+        SearchIndexStatsDTO index = FACADE.getSearchIndexStats();
+        gauge(out, "person_search_index_persons", "Persons in the suggestion index", index.getPersons());
+        gauge(out, "person_search_index_bytes", "Estimated memory use of the suggestion index", index.getEstimatedBytes());
+
+        ExecutorStatsDTO executor = DbExecutor.getStats();
+        gauge(out, "db_executor_active", "Database tasks running", executor.getActive());
+        gauge(out, "db_executor_queued", "Database tasks waiting for a thread", executor.getQueued());
+        counter(out, "db_executor_completed_total", "Database tasks completed", executor.getCompleted());
+        counter(out, "db_executor_rejected_total", "Database tasks rejected because the executor was full", executor.getRejected());
+
+        PoolStatsDTO pool = EMF_Creator.getPoolStats();
+        if (pool.isPooled()) {
+            gauge(out, "db_pool_connections_active", "Connections in use", pool.getActive());
+            gauge(out, "db_pool_connections_idle", "Connections open and free", pool.getIdle());
+            gauge(out, "db_pool_connections_pending", "Threads waiting for a connection", pool.getPending());
+            gauge(out, "db_pool_connections_max", "Largest number of connections", pool.getMaxSize());
+            counter(out, "db_pool_acquired_total", "Connections handed out", pool.getAcquired());
+            counter(out, "db_pool_timeouts_total", "Waits for a connection that timed out", pool.getTimeouts());
+        }
+
+        counter(out, "db_sql_statements_total", "SQL statements run, in requests or not", SqlProfiler.getStatements());
+        counter(out, "db_sql_rows_total", "Rows returned or changed by the SQL statements", SqlProfiler.getRows());
+        out.append("# HELP db_sql_seconds_total Time the SQL statements took to execute\n");
+        out.append("# TYPE db_sql_seconds_total counter\n");
+        out.append("db_sql_seconds_total ").append(RequestMetrics.seconds(SqlProfiler.getNanos())).append('\n');
+
+        out.append("# HELP http_errors_total Errors answered by the exception mappers, by exception\n");
+        out.append("# TYPE http_errors_total counter\n");
+        for (Map.Entry<String, Long> error : ErrorLog.getCounts().entrySet()) {
+            out.append("http_errors_total{error=\"").append(error.getKey()).append("\"} ").append(error.getValue()).append('\n');
+        }
+        counter(out, "http_error_logs_suppressed_total", "Errors counted but not logged, see ERROR_LOG_INTERVAL_MS",
+                ErrorLog.getSuppressed());
+
+        AdmissionStatsDTO admission = AdmissionFilter.getStats();
+        LimiterStatsDTO[] limiters = {admission.getReads(), admission.getWrites()};
+        out.append("# HELP http_admission_limit Requests let in at once, found by the AIMD limiter\n");
+        out.append("# TYPE http_admission_limit gauge\n");
+        for (LimiterStatsDTO l : limiters) {
+            out.append("http_admission_limit{kind=\"").append(l.getName()).append("\"} ").append(l.getLimit()).append('\n');
+        }
+        out.append("# HELP http_admission_in_flight Requests let in and not answered yet\n");
+        out.append("# TYPE http_admission_in_flight gauge\n");
+        for (LimiterStatsDTO l : limiters) {
+            out.append("http_admission_in_flight{kind=\"").append(l.getName()).append("\"} ").append(l.getInFlight()).append('\n');
+        }
+        out.append("# HELP http_admission_rejected_total Requests answered with 503 because the limit was reached\n");
+        out.append("# TYPE http_admission_rejected_total counter\n");
+        for (LimiterStatsDTO l : limiters) {
+            out.append("http_admission_rejected_total{kind=\"").append(l.getName()).append("\"} ").append(l.getRejected()).append('\n');
+        }
+        out.append("# HELP http_admission_decreases_total Times the limit was cut after a slow or overloaded answer\n");
+        out.append("# TYPE http_admission_decreases_total counter\n");
+        for (LimiterStatsDTO l : limiters) {
+            out.append("http_admission_decreases_total{kind=\"").append(l.getName()).append("\"} ").append(l.getDecreases()).append('\n');
+        }
+        counter(out, "http_rate_limited_total", "Requests answered with 429 because the client went over its rate",
+                admission.getRateLimited());
+
+        CompressionStatsDTO compression = CompressionInterceptor.getStats();
+        counter(out, "http_responses_compressed_total", "Response bodies compressed", compression.getCompressed());
+        counter(out, "http_responses_compressed_bytes_before_total", "Bytes of the compressed bodies before compression",
+                compression.getBytesBefore());
+        counter(out, "http_responses_compressed_bytes_after_total", "Bytes of the compressed bodies after compression",
+                compression.getBytesAfter());
+        return out.toString();
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        metric(out, name, "gauge", help, value);
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        metric(out, name, "counter", help, value);
+    }
+
+    private static void metric(StringBuilder out, String name, String type, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append(name).append(' ').append(value).append('\n');
+    }
+}
@@ -0,0 +1,76 @@
+package rest;
+
+import dto.PersonBinaryCodec;
+import dto.PersonDTO;
+import dto.PersonsDTO;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Reads and writes PersonDTO and PersonsDTO as application/x-person-binary,
+ * see PersonBinaryCodec for the format.
+ */
+@Provider
+@Produces({PersonBinaryCodec.MEDIA_TYPE})
+@Consumes({PersonBinaryCodec.MEDIA_TYPE})
+public class PersonBinaryProvider implements MessageBodyWriter<Object>, MessageBodyReader<Object> {
+
+    private static final MediaType BINARY_TYPE = MediaType.valueOf(PersonBinaryCodec.MEDIA_TYPE);
+
+    private static boolean handles(Class<?> type, MediaType mediaType) {
+        return mediaType.isCompatible(BINARY_TYPE) && (type == PersonDTO.class || type == PersonsDTO.class);
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return handles(type, mediaType);
+    }
+
+    @Override
+    public long getSize(Object t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        //The codec writes byte by byte, so buffer it. Flush, but do not close the container's stream
+        BufferedOutputStream out = new BufferedOutputStream(entityStream);
+        if (t instanceof PersonsDTO) {
+            PersonBinaryCodec.write((PersonsDTO) t, out);
+        } else {
+            PersonBinaryCodec.write((PersonDTO) t, out);
+        }
+        out.flush();
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return handles(type, mediaType);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        InputStream in = new BufferedInputStream(entityStream);
+        try {
+            return PersonsDTO.class.equals(type) ? PersonBinaryCodec.readPersons(in) : PersonBinaryCodec.readPerson(in);
+        } catch (IOException ex) {
+            //A body that is cut short or not in the format is the client's mistake
+            throw new BadRequestException("Not a valid " + PersonBinaryCodec.MEDIA_TYPE + " body", ex);
+        }
+    }
+}
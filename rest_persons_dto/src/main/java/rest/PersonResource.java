@@ -1,23 +1,45 @@
 package rest;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import dto.BatchResultDTO;
+import dto.BulkEditDTO;
+import dto.BulkResultDTO;
+import dto.ChangesDTO;
+import dto.PersonBinaryCodec;
 import dto.PersonDTO;
 import dto.PersonsDTO;
 import entities.Person;
 import exceptions.MissingInputException;
+import exceptions.PersonConflictException;
 import exceptions.PersonNotFoundException;
 import facades.PersonFacade;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import javax.persistence.EntityManagerFactory;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.PATCH;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import utils.EMF_Creator;
 
 
@@ -29,7 +51,34 @@ public class PersonResource {
     //An alternative way to get the EntityManagerFactory, whithout having to type the details all over the code
     //EMF = EMF_Creator.createEntityManagerFactory(DbSelector.DEV, Strategy.CREATE);
     private static final PersonFacade FACADE = PersonFacade.getPersonFacade(EMF);
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final TypeAdapter<PersonDTO> PERSON_ADAPTER = GsonProvider.GSON.getAdapter(PersonDTO.class);
+
+    //The binary format (see PersonBinaryCodec) is only sent to clients that ask for it in Accept,
+    //qs below 1 keeps JSON the choice for a wildcard Accept or none at all
+    private static final String BINARY = PersonBinaryCodec.MEDIA_TYPE + ";qs=0.5";
+
+    //Clients may keep a copy, but must check it with If-None-Match before use
+    private static final CacheControl REVALIDATE = CacheControl.valueOf("no-cache");
+
+    /*
+     * The version is bumped on every write to a person, so it identifies the
+     * person's state. The tag is weak because the JSON, binary and compressed
+     * bodies of the same state share it, they are equivalent but not the
+     * same bytes.
+     */
+    static EntityTag etagFor(PersonDTO p) {
+        return new EntityTag(String.valueOf(p.getVersion()), true);
+    }
+
+    //A page changes when a person is added, removed or edited within it
+    static EntityTag etagFor(PersonsDTO ps) {
+        long hash = ps.getNext() == null ? 0 : ps.getNext();
+        for (PersonDTO p : ps.getAll()) {
+            hash = 31 * hash + p.getId();
+            hash = 31 * hash + (p.getVersion() == null ? 0 : p.getVersion());
+        }
+        return new EntityTag(ps.size() + "-" + Long.toHexString(hash), true);
+    }
 
     @GET
     @Produces({MediaType.APPLICATION_JSON})
@@ -47,46 +96,197 @@ public class PersonResource {
 
     @Path("all")
     @GET
+    @Produces({MediaType.APPLICATION_JSON, BINARY})
+    public Response getAllPersons(@QueryParam("after") @DefaultValue("0") int after,
+            @QueryParam("limit") @DefaultValue("" + PersonFacade.DEFAULT_PAGE_SIZE) int limit,
+            @Context Request request) {
+        PersonsDTO psDTO = FACADE.getPersonsPage(after, limit);
+        EntityTag etag = etagFor(psDTO);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.cacheControl(REVALIDATE).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+        }
+        return Response.ok(psDTO).tag(etag).cacheControl(REVALIDATE).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+    }
+
+    /**
+     * The persons added, changed and deleted since the token in since, see
+     * PersonFacade.getChanges. Leave since out the first time, then pass
+     * next from the last answer, right away while more is true and
+     * otherwise whenever the client wants to catch up.
+     */
+    @Path("changes")
+    @GET
     @Produces({MediaType.APPLICATION_JSON})
-    public String getAllPersons() {
-        PersonsDTO psDTO = FACADE.getAllPersons();
-        return GSON.toJson(psDTO);
+    public ChangesDTO getChanges(@QueryParam("since") String since,
+            @QueryParam("limit") @DefaultValue("" + PersonFacade.DEFAULT_PAGE_SIZE) int limit) throws MissingInputException {
+        return FACADE.getChanges(since, limit);
     }
 
-    @Path("{id}")
+    /**
+     * Persons whose names and/or phone start with the given values, e.g.
+     * /search?lastName=Han finds Hansen and Hanson. Pass next from a page as
+     * offset to get the next page.
+     */
+    @Path("search")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON, BINARY})
+    public Response searchPersons(@QueryParam("firstName") String firstName,
+            @QueryParam("lastName") String lastName,
+            @QueryParam("phone") String phone,
+            @QueryParam("offset") @DefaultValue("0") int offset,
+            @QueryParam("limit") @DefaultValue("" + PersonFacade.DEFAULT_PAGE_SIZE) int limit,
+            @Context Request request) throws MissingInputException {
+        PersonsDTO psDTO = FACADE.searchPersons(firstName, lastName, phone, offset, limit);
+        EntityTag etag = etagFor(psDTO);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.cacheControl(REVALIDATE).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+        }
+        return Response.ok(psDTO).tag(etag).cacheControl(REVALIDATE).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+    }
+
+    /**
+     * Type-ahead suggestions, e.g. /suggest?q=jo%20han, answered from the
+     * in-memory index without asking the database. Not paged, ask for a
+     * longer query instead of more results.
+     */
+    @Path("suggest")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON, BINARY})
+    public Response suggestPersons(@QueryParam("q") String query,
+            @QueryParam("limit") @DefaultValue("" + PersonFacade.DEFAULT_SUGGEST_LIMIT) int limit) throws MissingInputException {
+        return Response.ok(FACADE.suggestPersons(query, limit)).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+    }
+
+    /**
+     * Writes every person as {"all":[...]} while the rows are read from the
+     * database, so neither the list nor the JSON string is ever held in
+     * memory. Use this instead of paging through /all when a client needs the
+     * whole table in one response. Jersey only holds back the first 8 KB (to
+     * set Content-Length on small bodies), after that the rows go out chunked
+     * as they are read.
+     */
+    @Path("all/stream")
     @GET
     @Produces({MediaType.APPLICATION_JSON})
-    public String getPerson(@PathParam("id") int id) throws PersonNotFoundException {
+    public StreamingOutput streamAllPersons() {
+        return output -> {
+            JsonWriter writer = new JsonWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            writer.beginObject().name("all").beginArray();
+            FACADE.forEachPerson(p -> {
+                try {
+                    PERSON_ADAPTER.write(writer, p);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            writer.endArray().endObject();
+            writer.flush();
+        };
+    }
+
+    @Path("{id}")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON, BINARY})
+    public Response getPerson(@PathParam("id") int id, @Context Request request) throws PersonNotFoundException {
         PersonDTO pDTO = FACADE.getPerson(id);
-        return GSON.toJson(pDTO);
+        EntityTag etag = etagFor(pDTO);
+        Response.ResponseBuilder notModified = pDTO.getLastEdited() == null
+                ? request.evaluatePreconditions(etag)
+                : request.evaluatePreconditions(pDTO.getLastEdited(), etag);
+        if (notModified != null) {
+            //304, the client's copy is still good, so we skip the JSON
+            return notModified.cacheControl(REVALIDATE).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+        }
+        return Response.ok(pDTO)
+                .tag(etag)
+                .lastModified(pDTO.getLastEdited())
+                .cacheControl(REVALIDATE)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .build();
     }
 
+    @POST
+    @Consumes({MediaType.APPLICATION_JSON, PersonBinaryCodec.MEDIA_TYPE})
+    @Produces({MediaType.APPLICATION_JSON, BINARY})
+    public PersonDTO addPerson(PersonDTO pDTO) throws MissingInputException {
+        return FACADE.addPerson(pDTO.getfName(), pDTO.getlName(), pDTO.getPhone());
+    }
+
+    @Path("batch")
     @POST
     @Consumes({MediaType.APPLICATION_JSON})
     @Produces({MediaType.APPLICATION_JSON})
-    public String addPerson(String person) throws MissingInputException {
-        PersonDTO pDTO = GSON.fromJson(person, PersonDTO.class);
-        PersonDTO pAdded = FACADE.addPerson(pDTO.getfName(), pDTO.getlName(), pDTO.getPhone());
-        return GSON.toJson(pAdded);
+    public BatchResultDTO addPersons(List<PersonDTO> pDTOs) {
+        return FACADE.addPersons(pDTOs);
     }
 
-    @Path("{id}")
+    @Path("batch")
     @PUT
     @Consumes({MediaType.APPLICATION_JSON})
     @Produces({MediaType.APPLICATION_JSON})
-    public String editPerson(@PathParam("id") int id, String person) throws PersonNotFoundException, MissingInputException {
-        PersonDTO pDTO = GSON.fromJson(person, PersonDTO.class);
+    public BulkResultDTO editPersons(BulkEditDTO bulkEdit) throws MissingInputException {
+        return FACADE.editPersons(bulkEdit);
+    }
+
+    @Path("batch/delete")
+    @POST
+    @Consumes({MediaType.APPLICATION_JSON})
+    @Produces({MediaType.APPLICATION_JSON})
+    public BulkResultDTO deletePersons(List<Integer> ids) {
+        return FACADE.deletePersons(ids);
+    }
+
+    @Path("{id}")
+    @PUT
+    @Consumes({MediaType.APPLICATION_JSON, PersonBinaryCodec.MEDIA_TYPE})
+    @Produces({MediaType.APPLICATION_JSON, BINARY})
+    public Response editPerson(@PathParam("id") int id, PersonDTO pDTO) throws PersonNotFoundException, MissingInputException {
         pDTO.setId(id);
         PersonDTO pEdited = FACADE.editPerson(pDTO);
-        return GSON.toJson(pEdited);
+        return Response.ok(pEdited)
+                .tag(etagFor(pEdited))
+                .lastModified(pEdited.getLastEdited())
+                .build();
+    }
+
+    /**
+     * Changes only the fields sent, e.g. {"phone":"12345678"}. Send the ETag
+     * from a GET as If-Match to make sure nobody else changed the person in
+     * the meantime, a 409 means they did.
+     */
+    @Path("{id}")
+    @PATCH
+    @Consumes({MediaType.APPLICATION_JSON})
+    @Produces({MediaType.APPLICATION_JSON, BINARY})
+    public Response patchPerson(@PathParam("id") int id, PersonDTO changes, @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch)
+            throws PersonNotFoundException, MissingInputException, PersonConflictException {
+        PersonDTO pPatched = FACADE.patchPerson(id, changes, versionFrom(ifMatch));
+        return Response.ok(pPatched)
+                .tag(etagFor(pPatched))
+                .lastModified(pPatched.getLastEdited())
+                .build();
+    }
+
+    //The version from an If-Match header, null when any version will do
+    private static Integer versionFrom(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(EntityTag.valueOf(ifMatch.trim()).getValue());
+        } catch (IllegalArgumentException ex) {
+            //Not an ETag we handed out, so it can never match
+            return -1;
+        }
     }
 
     @Path("{id}")
     @DELETE
-    @Produces({MediaType.APPLICATION_JSON})
-    public String deletePerson(@PathParam("id") int id) throws PersonNotFoundException {
-        PersonDTO pDeleted = FACADE.deletePerson(id);
-        return GSON.toJson(pDeleted);
+    @Produces({MediaType.APPLICATION_JSON, BINARY})
+    public PersonDTO deletePerson(@PathParam("id") int id) throws PersonNotFoundException {
+        return FACADE.deletePerson(id);
 
     }
 }
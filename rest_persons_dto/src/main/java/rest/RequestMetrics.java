@@ -0,0 +1,190 @@
+package rest;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.uri.UriTemplate;
+import utils.BucketHistogram;
+import utils.SqlProfiler;
+
+/**
+ * Latency, in-flight, status code and response size metrics per route,
+ * filled in by MetricsFilter and shown by MetricsResource. The SQL
+ * statements, rows and database time per route are filled in by
+ * SqlProfileFilter.
+ *
+ * A route is the HTTP method and the path template of the resource method,
+ * e.g. GET person/{id}, so /person/1 and /person/2 are counted together.
+ * Requests that match no resource method are counted under the route
+ * "unmatched".
+ */
+public class RequestMetrics {
+
+    private static final long[] LATENCY_BOUNDS_NANOS = {
+        TimeUnit.MICROSECONDS.toNanos(500), TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MICROSECONDS.toNanos(2500),
+        TimeUnit.MILLISECONDS.toNanos(5), TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(25),
+        TimeUnit.MILLISECONDS.toNanos(50), TimeUnit.MILLISECONDS.toNanos(100), TimeUnit.MILLISECONDS.toNanos(250),
+        TimeUnit.MILLISECONDS.toNanos(500), TimeUnit.SECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(2500),
+        TimeUnit.SECONDS.toNanos(5), TimeUnit.SECONDS.toNanos(10)};
+    private static final long[] SIZE_BOUNDS = {128, 512, 1024, 4096, 16384, 65536, 262144, 1048576, 4194304};
+    private static final long[] STATEMENT_BOUNDS = {0, 1, 2, 3, 5, 10, 20, 50, 100};
+
+    private static final Map<ResourceMethod, Route> ROUTES = new ConcurrentHashMap<>();
+    private static final Map<String, Route> UNMATCHED = new ConcurrentHashMap<>();
+
+    private RequestMetrics() {
+    }
+
+    /**
+     * The metrics of one route. Recording only touches LongAdders and
+     * arrays made up front, so it takes no locks and does not allocate.
+     */
+    public static class Route {
+
+        private final String labels;
+        private final LongAdder inFlight = new LongAdder();
+        private final BucketHistogram latency = new BucketHistogram(LATENCY_BOUNDS_NANOS);
+        private final BucketHistogram size = new BucketHistogram(SIZE_BOUNDS);
+        //Indexed by status code, made the first time a code is seen
+        private final AtomicReferenceArray<LongAdder> statuses = new AtomicReferenceArray<>(600);
+        private final BucketHistogram sqlStatements = new BucketHistogram(STATEMENT_BOUNDS);
+        private final LongAdder sqlRows = new LongAdder();
+        private final LongAdder sqlNanos = new LongAdder();
+        private final LongAdder nPlusOne = new LongAdder();
+
+        Route(String method, String path) {
+            this.labels = "method=\"" + escape(method) + "\",route=\"" + escape(path) + "\"";
+        }
+
+        void started() {
+            inFlight.increment();
+        }
+
+        void finished(long nanos, long bytes) {
+            inFlight.decrement();
+            latency.record(nanos);
+            size.record(bytes);
+        }
+
+        void countStatus(int status) {
+            int index = status >= 0 && status < 600 ? status : 0;
+            LongAdder count = statuses.get(index);
+            if (count == null) {
+                statuses.compareAndSet(index, null, new LongAdder());
+                count = statuses.get(index);
+            }
+            count.increment();
+        }
+
+        void sqlFinished(SqlProfiler.Profile profile, boolean suspectedNPlusOne) {
+            sqlStatements.record(profile.getStatements());
+            sqlRows.add(profile.getRows());
+            sqlNanos.add(profile.getNanos());
+            if (suspectedNPlusOne) {
+                nPlusOne.increment();
+            }
+        }
+    }
+
+    /**
+     * @return the route of a matched resource method, created the first time
+     * it is used
+     */
+    static Route route(ResourceMethod method, Iterable<UriTemplate> matchedTemplates) {
+        Route route = ROUTES.get(method);
+        if (route == null) {
+            route = ROUTES.computeIfAbsent(method, m -> new Route(m.getHttpMethod(), path(matchedTemplates)));
+        }
+        return route;
+    }
+
+    static Route unmatched(String httpMethod) {
+        Route route = UNMATCHED.get(httpMethod);
+        if (route == null) {
+            route = UNMATCHED.computeIfAbsent(httpMethod, m -> new Route(m, "unmatched"));
+        }
+        return route;
+    }
+
+    //Jersey lists the matched templates from the method up to the resource class
+    private static String path(Iterable<UriTemplate> matchedTemplates) {
+        StringBuilder path = new StringBuilder();
+        for (UriTemplate template : matchedTemplates) {
+            String part = template.getTemplate().replaceAll("^/+|/+$", "");
+            if (!part.isEmpty()) {
+                path.insert(0, path.length() == 0 ? part : part + "/");
+            }
+        }
+        return path.toString();
+    }
+
+    //Exact, and without an exponent, e.g. 0.000123
+    static String seconds(long nanos) {
+        return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Appends all routes in Prometheus text format, sorted by route.
+     */
+    public static void writePrometheus(StringBuilder out) {
+        Map<String, Route> routes = new TreeMap<>();
+        ROUTES.values().forEach(r -> routes.put(r.labels, r));
+        UNMATCHED.values().forEach(r -> routes.put(r.labels, r));
+
+        out.append("# HELP http_server_requests_total Requests answered, by route and status code\n");
+        out.append("# TYPE http_server_requests_total counter\n");
+        for (Route r : routes.values()) {
+            for (int code = 0; code < r.statuses.length(); code++) {
+                LongAdder count = r.statuses.get(code);
+                if (count != null) {
+                    out.append("http_server_requests_total{").append(r.labels).append(",code=\"").append(code).append("\"} ")
+                            .append(count.sum()).append('\n');
+                }
+            }
+        }
+        out.append("# HELP http_server_requests_in_flight Requests being handled right now\n");
+        out.append("# TYPE http_server_requests_in_flight gauge\n");
+        for (Route r : routes.values()) {
+            out.append("http_server_requests_in_flight{").append(r.labels).append("} ").append(r.inFlight.sum()).append('\n');
+        }
+        out.append("# HELP http_server_request_duration_seconds Time from the matched request until the body is written\n");
+        out.append("# TYPE http_server_request_duration_seconds histogram\n");
+        for (Route r : routes.values()) {
+            r.latency.writePrometheus(out, "http_server_request_duration_seconds", r.labels, TimeUnit.SECONDS.toNanos(1));
+        }
+        out.append("# HELP http_server_response_size_bytes Bytes of response body sent, after compression\n");
+        out.append("# TYPE http_server_response_size_bytes histogram\n");
+        for (Route r : routes.values()) {
+            r.size.writePrometheus(out, "http_server_response_size_bytes", r.labels, 1);
+        }
+        out.append("# HELP http_server_sql_statements SQL statements run per request\n");
+        out.append("# TYPE http_server_sql_statements histogram\n");
+        for (Route r : routes.values()) {
+            r.sqlStatements.writePrometheus(out, "http_server_sql_statements", r.labels, 1);
+        }
+        out.append("# HELP http_server_sql_rows_total Rows returned or changed by the SQL statements of the requests\n");
+        out.append("# TYPE http_server_sql_rows_total counter\n");
+        for (Route r : routes.values()) {
+            out.append("http_server_sql_rows_total{").append(r.labels).append("} ").append(r.sqlRows.sum()).append('\n');
+        }
+        out.append("# HELP http_server_sql_seconds_total Time the SQL statements of the requests took to execute\n");
+        out.append("# TYPE http_server_sql_seconds_total counter\n");
+        for (Route r : routes.values()) {
+            out.append("http_server_sql_seconds_total{").append(r.labels).append("} ").append(seconds(r.sqlNanos.sum())).append('\n');
+        }
+        out.append("# HELP http_server_sql_n_plus_one_total Requests that ran the same SELECT more times than SQL_N_PLUS_ONE_THRESHOLD\n");
+        out.append("# TYPE http_server_sql_n_plus_one_total counter\n");
+        for (Route r : routes.values()) {
+            out.append("http_server_sql_n_plus_one_total{").append(r.labels).append("} ").append(r.nPlusOne.sum()).append('\n');
+        }
+    }
+}
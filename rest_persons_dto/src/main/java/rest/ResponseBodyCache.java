@@ -0,0 +1,125 @@
+package rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized response bodies keyed by request URI, media type and ETag, used
+ * by CompressionInterceptor. Each entry keeps the plain body and, once a
+ * client has asked for them, the gzip and deflate versions next to it, so
+ * the same body is never serialized or compressed twice.
+ *
+ * The ETag changes whenever the content changes, so an entry can never be
+ * stale, it just stops being asked for and is evicted in least recently used
+ * order.
+ */
+class ResponseBodyCache {
+
+    private final int maxEntries;
+    private final int maxBodyBytes;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private long hits;
+    private long misses;
+
+    static class Entry {
+
+        private final byte[] plain;
+        private byte[] gzip;
+        private byte[] deflate;
+
+        Entry(byte[] plain) {
+            this.plain = plain;
+        }
+
+        byte[] plain() {
+            return plain;
+        }
+
+        //Compressed the first time an encoding is asked for, and kept
+        synchronized byte[] encoded(String encoding) {
+            if (encoding.equals(CompressionInterceptor.GZIP)) {
+                if (gzip == null) {
+                    gzip = compress(plain, true);
+                }
+                return gzip;
+            }
+            if (deflate == null) {
+                deflate = compress(plain, false);
+            }
+            return deflate;
+        }
+
+        private static byte[] compress(byte[] body, boolean gzip) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (OutputStream zip = gzip ? new GZIPOutputStream(out) : new DeflaterOutputStream(out)) {
+                zip.write(body);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * @param maxEntries the number of bodies to keep, 0 disables the cache
+     * @param maxBodyBytes bodies larger than this are not kept
+     */
+    ResponseBodyCache(int maxEntries, int maxBodyBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBodyBytes = maxBodyBytes;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ResponseBodyCache.this.maxEntries;
+            }
+        };
+    }
+
+    boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    static String key(String uri, Object mediaType, Object etag) {
+        return uri + "|" + mediaType + "|" + etag;
+    }
+
+    synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * @return the new entry, it is only kept if the body is small enough
+     */
+    synchronized Entry put(String key, byte[] plain) {
+        Entry entry = new Entry(plain);
+        if (plain.length <= maxBodyBytes) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,142 @@
+package rest;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+import utils.SqlProfiler;
+
+/**
+ * Counts the SQL statements, rows and database time of every request with
+ * SqlProfiler, and adds them to the request's route in RequestMetrics.
+ *
+ * When the client sends an X-SQL-Profile header, or SQL_PROFILE_HEADER=true,
+ * the response gets an X-SQL-Profile header like
+ * "statements=2; rows=20; db-ms=1.234". The header is set before the body is
+ * written, so statements run while a streamed body is written are in the
+ * metrics but not in the header.
+ *
+ * A request that runs the same SELECT more than SQL_N_PLUS_ONE_THRESHOLD
+ * times (default 10) is logged as a possible N+1 pattern: one query for a
+ * list, then one per element. The number of statements is not used, a
+ * batch of inserts runs many statements without being an N+1.
+ *
+ * The profile is bound to the container thread in the request filter. For
+ * a suspended (async) request the response filter runs on another thread,
+ * so the profile is unbound from the container thread when the resource
+ * method returns.
+ */
+@Provider
+public class SqlProfileFilter implements ContainerRequestFilter, ContainerResponseFilter, ApplicationEventListener {
+
+    static final String HEADER = "X-SQL-Profile";
+
+    private static final String PROFILE = SqlProfileFilter.class.getName() + ".profile";
+    private static final int N_PLUS_ONE_THRESHOLD = intFromEnv("SQL_N_PLUS_ONE_THRESHOLD", 10);
+    private static final boolean ALWAYS_HEADER = "true".equalsIgnoreCase(System.getenv("SQL_PROFILE_HEADER"));
+
+    //Unbinds the profile from the container thread once an async resource method has returned
+    private static final RequestEventListener UNBIND_SUSPENDED = event -> {
+        if (event.getType() != RequestEvent.Type.RESOURCE_METHOD_FINISHED) {
+            return;
+        }
+        ResourceMethod method = event.getUriInfo().getMatchedResourceMethod();
+        SqlProfiler.Profile profile = (SqlProfiler.Profile) event.getContainerRequest().getProperty(PROFILE);
+        if (method != null && method.isSuspendDeclared() && profile != null) {
+            SqlProfiler.end(profile);
+        }
+    };
+
+    private static int intFromEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return UNBIND_SUSPENDED;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        request.setProperty(PROFILE, SqlProfiler.start());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        SqlProfiler.Profile profile = (SqlProfiler.Profile) request.getProperty(PROFILE);
+        if (profile == null) {
+            //No resource method matched, so the request filter did not run
+            return;
+        }
+        if (ALWAYS_HEADER || request.getHeaderString(HEADER) != null) {
+            response.getHeaders().putSingle(HEADER, profile.toString());
+        }
+        if (response.hasEntity()) {
+            response.setEntityStream(new ProfiledOutputStream(response.getEntityStream(), request, profile));
+        } else {
+            finished(request, profile);
+        }
+    }
+
+    private static void finished(ContainerRequestContext request, SqlProfiler.Profile profile) {
+        SqlProfiler.end(profile);
+        boolean suspectedNPlusOne = profile.getRepeatedSelects() > N_PLUS_ONE_THRESHOLD;
+        if (suspectedNPlusOne) {
+            Logger.getLogger(SqlProfileFilter.class.getName()).log(Level.WARNING,
+                    "Possible N+1 queries: {0} {1} ran the same SELECT {2} times, {3}",
+                    new Object[]{request.getMethod(), request.getUriInfo().getPath(), profile.getRepeatedSelects(), profile});
+        }
+        RequestMetrics.Route route = MetricsFilter.route(request);
+        if (route != null) {
+            route.sqlFinished(profile, suspectedNPlusOne);
+        }
+    }
+
+    //Records the profile when Jersey closes the stream, after a streamed body has run its queries
+    private static class ProfiledOutputStream extends FilterOutputStream {
+
+        private final ContainerRequestContext request;
+        private final SqlProfiler.Profile profile;
+        private boolean closed;
+
+        ProfiledOutputStream(OutputStream out, ContainerRequestContext request, SqlProfiler.Profile profile) {
+            super(out);
+            this.request = request;
+            this.profile = profile;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+            } finally {
+                finished(request, profile);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package rest;
+
+import dto.ReadinessDTO;
+import facades.PersonFacade;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+import utils.EMF_Creator;
+
+/**
+ * Deploys the persistence unit and warms it up as soon as the application
+ * has started, so the first request does not pay for EclipseLink's metadata
+ * processing, the database login and parsing the queries. The suggestion
+ * index of PersonFacade is built from the Person table at the same time.
+ *
+ * The work runs on a background thread, and /api/health/ready answers 503
+ * until it is done. Configured from environment variables:
+ * WARMUP_ROUNDS      - times each facade query is run (default 3, 0 skips it)
+ * WARMUP_CONNECTIONS - connections opened at once, to fill the connection
+ *                      pool (default 4, 0 skips it)
+ */
+public class StartupListener implements ApplicationEventListener {
+
+    private static final int ROUNDS = intFromEnv("WARMUP_ROUNDS", 3);
+    private static final int CONNECTIONS = intFromEnv("WARMUP_CONNECTIONS", 4);
+
+    private static boolean started;
+    private static volatile boolean ready;
+    //Set once the facade is made, so stop can close it
+    private static volatile PersonFacade facade;
+    private static volatile long deployMillis;
+    private static volatile long warmupMillis;
+
+    private static int intFromEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+        if (event.getType() == ApplicationEvent.Type.INITIALIZATION_FINISHED) {
+            start();
+        } else if (event.getType() == ApplicationEvent.Type.DESTROY_FINISHED) {
+            stop();
+        }
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return null;
+    }
+
+    //The application may be initialized more than once in the same JVM (tests), but is only warmed up once
+    private static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        Thread thread = new Thread(StartupListener::deployAndWarmUp, "startup-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    //Stops the threads the facade started, so an undeploy does not leave them behind
+    private static void stop() {
+        PersonFacade deployed = facade;
+        if (deployed != null) {
+            deployed.close();
+        }
+    }
+
+    private static void deployAndWarmUp() {
+        try {
+            long start = System.nanoTime();
+            EntityManagerFactory emf = EMF_Creator.createEntityManagerFactory();
+            //EclipseLink deploys the persistence unit and logs in when the first EntityManager is made
+            emf.createEntityManager().close();
+            facade = PersonFacade.getPersonFacade(emf);
+            deployMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            start = System.nanoTime();
+            openConnections(emf, CONNECTIONS);
+            for (int i = 0; i < ROUNDS; i++) {
+                facade.warmUp();
+            }
+            warmupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            facade.rebuildSearchIndex();
+            ready = true;
+            System.out.println("Deployed in " + deployMillis + " ms, warmed up in " + warmupMillis
+                    + " ms, search index built in " + facade.getSearchIndexStats().getBuildMillis() + " ms");
+        } catch (RuntimeException ex) {
+            //Requests will still try the database, but we never report ready
+            Logger.getLogger(StartupListener.class.getName()).log(Level.SEVERE, "Startup failed, the application is not ready", ex);
+        }
+    }
+
+    //Holds count connections at the same time, so the pool has opened them before the first requests
+    private static void openConnections(EntityManagerFactory emf, int count) {
+        List<EntityManager> ems = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                EntityManager em = emf.createEntityManager();
+                ems.add(em);
+                em.getTransaction().begin();
+                em.unwrap(Connection.class);
+            }
+        } finally {
+            for (EntityManager em : ems) {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+                em.close();
+            }
+        }
+    }
+
+    public static ReadinessDTO getReadiness() {
+        return new ReadinessDTO(ready, deployMillis, warmupMillis);
+    }
+}
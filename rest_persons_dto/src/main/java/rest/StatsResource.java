@@ -0,0 +1,80 @@
+package rest;
+
+import dto.AdmissionStatsDTO;
+import dto.CacheStatsDTO;
+import dto.CoalescingStatsDTO;
+import dto.CompressionStatsDTO;
+import dto.ExecutorStatsDTO;
+import dto.GroupCommitStatsDTO;
+import dto.PoolStatsDTO;
+import dto.SearchIndexStatsDTO;
+import facades.PersonFacade;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import utils.DbExecutor;
+import utils.EMF_Creator;
+
+
+@Path("stats")
+public class StatsResource {
+
+    private static final PersonFacade FACADE = PersonFacade.getPersonFacade(EMF_Creator.createEntityManagerFactory());
+
+    @Path("admission")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    public AdmissionStatsDTO getAdmissionStats() {
+        return AdmissionFilter.getStats();
+    }
+
+    @Path("cache")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    public CacheStatsDTO getCacheStats() {
+        return FACADE.getCacheStats();
+    }
+
+    @Path("coalescing")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    public CoalescingStatsDTO getCoalescingStats() {
+        return FACADE.getCoalescingStats();
+    }
+
+    @Path("executor")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    public ExecutorStatsDTO getExecutorStats() {
+        return DbExecutor.getStats();
+    }
+
+    @Path("group-commit")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    public GroupCommitStatsDTO getGroupCommitStats() {
+        return FACADE.getGroupCommitStats();
+    }
+
+    @Path("pool")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    public PoolStatsDTO getPoolStats() {
+        return EMF_Creator.getPoolStats();
+    }
+
+    @Path("search-index")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    public SearchIndexStatsDTO getSearchIndexStats() {
+        return FACADE.getSearchIndexStats();
+    }
+
+    @Path("compression")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    public CompressionStatsDTO getCompressionStats() {
+        return CompressionInterceptor.getStats();
+    }
+}
@@ -0,0 +1,79 @@
+package utils;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram with fixed bucket bounds, like a Prometheus histogram. Many
+ * threads can record at once without locks: each bucket, the count and the
+ * sum are LongAdders, which spread contended updates over several cells.
+ * Recording a value does not allocate.
+ */
+public class BucketHistogram {
+
+    private final long[] bounds;
+    //buckets[i] counts values <= bounds[i] and > bounds[i - 1], the last one counts the rest
+    private final LongAdder[] buckets;
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * @param bounds the upper bounds of the buckets, in increasing order
+     */
+    public BucketHistogram(long... bounds) {
+        this.bounds = bounds.clone();
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long value) {
+        int i = 0;
+        while (i < bounds.length && value > bounds[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        sum.add(value);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Appends the histogram in Prometheus text format: a cumulative _bucket
+     * line per bound and +Inf, then _sum and _count.
+     *
+     * @param name the metric name
+     * @param labels the labels of every line, e.g. method="GET", may be empty
+     * @param divisor the recorded units per unit of the metric, e.g.
+     * 1000000000 to report nanoseconds as seconds
+     */
+    public void writePrometheus(StringBuilder out, String name, String labels, long divisor) {
+        String separator = labels.isEmpty() ? "" : ",";
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += buckets[i].sum();
+            out.append(name).append("_bucket{").append(labels).append(separator)
+                    .append("le=\"").append(format(bounds[i] / (double) divisor)).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += buckets[bounds.length].sum();
+        out.append(name).append("_bucket{").append(labels).append(separator).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(braces).append(' ').append(format(sum.sum() / (double) divisor)).append('\n');
+        out.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+    }
+
+    //Plain decimals, so bounds read le="1024" and le="0.0005" rather than 1024.0 and 5.0E-4
+    static String format(double value) {
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+}
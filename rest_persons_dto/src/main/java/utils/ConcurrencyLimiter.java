@@ -0,0 +1,96 @@
+package utils;
+
+import dto.LimiterStatsDTO;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits how many requests are handled at once, and finds the limit by
+ * itself with AIMD, like TCP finds its window: while requests are answered
+ * in time the limit grows by about one per limit's worth of requests, and
+ * when one is too slow or the database is overloaded, the limit is cut by
+ * BACKOFF. Requests that started before the last cut do not cut it again,
+ * they were let in under the old limit, so a burst of slow answers cuts it
+ * once and not once per answer.
+ *
+ * The limit only grows while at least half of it is in use, so a quiet
+ * server does not drift up to the maximum.
+ */
+public class ConcurrencyLimiter {
+
+    private static final double BACKOFF = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder decreases = new LongAdder();
+    //Guarded by this, read without the lock in tryAcquire
+    private volatile double limit;
+    //A day back, so requests let in right away can cut the limit
+    private long lastDecrease = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+
+    /**
+     * @param latencyNanos answers slower than this count as a sign of
+     * overload
+     */
+    public ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, long latencyNanos) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyNanos = latencyNanos;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * @return true if the request may go on, then release must be called
+     * when it is answered
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param start System.nanoTime() when the request was let in
+     * @param overloaded true if the answer says the database is overloaded,
+     * e.g. a 503 from DbExecutor
+     */
+    public void release(long start, boolean overloaded) {
+        long now = System.nanoTime();
+        int before = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (overloaded || now - start > latencyNanos) {
+                if (start - lastDecrease > 0) {
+                    limit = Math.max(minLimit, limit * BACKOFF);
+                    lastDecrease = now;
+                    decreases.increment();
+                }
+            } else if (before * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public LimiterStatsDTO getStats() {
+        return new LimiterStatsDTO(name, (int) limit, minLimit, maxLimit, inFlight.get(), accepted.sum(), rejected.sum(),
+                decreases.sum());
+    }
+}
@@ -0,0 +1,134 @@
+package utils;
+
+import dto.ExecutorStatsDTO;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded executor for blocking database work, so a slow database ties up
+ * these threads and not the HTTP worker threads of the container.
+ *
+ * Configured from environment variables:
+ * DB_EXECUTOR_THREADS  - tasks running at once (default 16)
+ * DB_EXECUTOR_QUEUE    - tasks waiting for a thread (default 200)
+ * DB_EXECUTOR_VIRTUAL  - "true" to run each task on a virtual thread, if the
+ *                        JDK has them (21+), still limited to
+ *                        THREADS + QUEUE tasks at once
+ * DB_REQUEST_TIMEOUT_MS - how long a request may wait for its task
+ *                        (default 5000)
+ *
+ * When all threads are busy and the queue is full, execute throws
+ * RejectedExecutionException instead of queueing more work.
+ *
+ * The SQL statements a task runs are counted in the SqlProfiler profile of
+ * the request that handed it over.
+ */
+public class DbExecutor {
+
+    private static final int THREADS = intFromEnv("DB_EXECUTOR_THREADS", 16);
+    private static final int QUEUE = intFromEnv("DB_EXECUTOR_QUEUE", 200);
+    private static final long TIMEOUT_MS = intFromEnv("DB_REQUEST_TIMEOUT_MS", 5000);
+
+    private static final AtomicLong REJECTED = new AtomicLong();
+    private static final AtomicLong COMPLETED = new AtomicLong();
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+    private static ExecutorService executor;
+    private static Semaphore permits;
+    private static boolean virtual;
+
+    private DbExecutor() {
+    }
+
+    private static int intFromEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            if ("true".equalsIgnoreCase(System.getenv("DB_EXECUTOR_VIRTUAL"))) {
+                executor = newVirtualThreadExecutor();
+            }
+            if (executor != null) {
+                virtual = true;
+                permits = new Semaphore(THREADS + QUEUE);
+            } else {
+                AtomicInteger count = new AtomicInteger();
+                executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(QUEUE), r -> {
+                            Thread t = new Thread(r, "db-executor-" + count.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+            }
+        }
+        return executor;
+    }
+
+    //Looked up by reflection, so the code still builds and runs on Java 8
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            System.out.println("DB_EXECUTOR_VIRTUAL is set, but this JDK has no virtual threads. Using a thread pool");
+            return null;
+        }
+    }
+
+    /**
+     * @return how long a request may wait for its database work
+     */
+    public static long getTimeoutMillis() {
+        return TIMEOUT_MS;
+    }
+
+    /**
+     * Runs the task on the database executor.
+     *
+     * @throws RejectedExecutionException if the executor is full
+     */
+    public static void execute(Runnable task) {
+        ExecutorService exec = getExecutor();
+        if (virtual && !permits.tryAcquire()) {
+            REJECTED.incrementAndGet();
+            throw new RejectedExecutionException("The database executor is full");
+        }
+        SqlProfiler.Profile profile = SqlProfiler.current();
+        try {
+            exec.execute(() -> {
+                ACTIVE.incrementAndGet();
+                SqlProfiler.resume(profile);
+                try {
+                    task.run();
+                } finally {
+                    SqlProfiler.resume(null);
+                    ACTIVE.decrementAndGet();
+                    COMPLETED.incrementAndGet();
+                    if (virtual) {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            if (virtual) {
+                permits.release();
+            }
+            REJECTED.incrementAndGet();
+            throw ex;
+        }
+    }
+
+    public static ExecutorStatsDTO getStats() {
+        ExecutorService exec = getExecutor();
+        int queued = exec instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) exec).getQueue().size() : 0;
+        return new ExecutorStatsDTO(virtual, THREADS, QUEUE, ACTIVE.get(), queued, COMPLETED.get(), REJECTED.get());
+    }
+}
@@ -1,11 +1,20 @@
 package utils;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import dto.PoolStatsDTO;
+import entities.Person;
 import java.util.Properties;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import org.eclipse.persistence.internal.weaving.PersistenceWeaved;
 
 public class EMF_Creator {
 
+    private static PoolMetrics poolMetrics;
+    //Built once, every factory for the pu unit shares it
+    private static HikariDataSource pooledDataSource;
+
     /**
      * Call this method before all integration tests that uses the Grizzly
      * Server and the Test Database (in @BeforeAll ) Remember to call
@@ -22,6 +31,19 @@ public class EMF_Creator {
         System.clearProperty("IS_INTEGRATION_TEST_WITH_DB");
     }
 
+    /**
+     * Like startREST_TestWithDB(), but the Grizzly Server and the tests use
+     * the in-memory database (puMemory), so no database server is needed.
+     * Remember to call endREST_TestWithMemoryDB() in @AfterAll
+     */
+    public static void startREST_TestWithMemoryDB() {
+        System.setProperty("IS_INTEGRATION_TEST_WITH_MEMORY_DB", "testing");
+    }
+
+    public static void endREST_TestWithMemoryDB() {
+        System.clearProperty("IS_INTEGRATION_TEST_WITH_MEMORY_DB");
+    }
+
     public static EntityManagerFactory createEntityManagerFactory() {
         return createEntityManagerFactory(false);
     }
@@ -30,6 +52,19 @@ public class EMF_Creator {
         return createEntityManagerFactory(true);
     }
 
+    /**
+     * An EntityManagerFactory for the puMemory persistence unit, an H2
+     * database that lives in memory for as long as the JVM runs. Needs no
+     * database server, so benchmarks and load tests can run anywhere. H2 is
+     * a test dependency, so this only works from test code.
+     */
+    public static EntityManagerFactory createEntityManagerFactoryInMemory() {
+        System.out.println("Using an in-memory database via persistence-unit --> puMemory ");
+        Properties props = new Properties();
+        addStartupProperties(props, "puMemory");
+        return Persistence.createEntityManagerFactory("puMemory", props);
+    }
+
     private static EntityManagerFactory createEntityManagerFactory(boolean isTest) {
 
         
@@ -49,9 +84,20 @@ public class EMF_Creator {
             props.setProperty("javax.persistence.jdbc.password", pw);
             props.setProperty("javax.persistence.jdbc.url", connection_str);
             props.setProperty("javax.persistence.jdbc.driver", "com.mysql.cj.jdbc.Driver");
+            if ("hikari".equalsIgnoreCase(System.getenv("DB_POOL"))) {
+                props.put("javax.persistence.nonJtaDataSource", createPooledDataSource(user, pw, connection_str));
+                //The pool logs in, EclipseLink must ask it for a connection without a user
+                props.setProperty("javax.persistence.jdbc.user", "");
+                props.setProperty("javax.persistence.jdbc.password", "");
+            }
+            addStartupProperties(props, "pu");
             return Persistence.createEntityManagerFactory("pu", props);
         }
 
+        if (System.getProperty("IS_INTEGRATION_TEST_WITH_MEMORY_DB") != null) {
+            return createEntityManagerFactoryInMemory();
+        }
+
         /* Strategy for dev and test
            Uses the two persistence units declared in persistence.xml
          */
@@ -63,7 +109,9 @@ public class EMF_Creator {
         }
         EntityManagerFactory emf = null;
         try {
-         emf =  Persistence.createEntityManagerFactory(puName, null);
+         Properties props = new Properties();
+         addStartupProperties(props, puName);
+         emf =  Persistence.createEntityManagerFactory(puName, props);
        
         } catch (javax.persistence.PersistenceException ex){
             System.out.println("##########################################################");
@@ -75,4 +123,81 @@ public class EMF_Creator {
         }
          return emf;
     }
+
+    /*
+      SCHEMA_ACTION overrides javax.persistence.schema-generation.database.action
+      for the pu unit, e.g. "none" to skip the schema check on every start.
+      The test unit always drops and creates its tables.
+      If the entities were woven at build time (mvn -Pstaticweave), EclipseLink
+      is told so, and skips weaving them at deploy time.
+      SqlProfiler counts the SQL statements of every unit, SQL_PROFILE=false
+      turns it off.
+     */
+    private static void addStartupProperties(Properties props, String puName) {
+        String schemaAction = System.getenv("SCHEMA_ACTION");
+        if (schemaAction != null && puName.equals("pu")) {
+            props.setProperty("javax.persistence.schema-generation.database.action", schemaAction);
+        }
+        if (PersistenceWeaved.class.isAssignableFrom(Person.class)) {
+            props.setProperty("eclipselink.weaving", "static");
+        }
+        if (!"false".equalsIgnoreCase(System.getenv("SQL_PROFILE"))) {
+            props.setProperty("eclipselink.profiler", SqlProfiler.class.getName());
+        }
+    }
+
+    /*
+      Used instead of EclipseLink's own connection pool when DB_POOL=hikari.
+      The pool is built on the first call and handed out on every later one,
+      as each resource asks for its own EntityManagerFactory.
+      Configured from environment variables:
+      DB_POOL_SIZE              - max connections (default 10)
+      DB_POOL_MIN_IDLE          - idle connections kept open (default DB_POOL_SIZE)
+      DB_STATEMENT_CACHE_SIZE   - prepared statements cached per connection, 0 turns it off (default 250)
+      DB_CONNECTION_TIMEOUT_MS  - how long to wait for a free connection (default 30000)
+      DB_VALIDATION_TIMEOUT_MS  - how long to wait for a connection to be validated (default 5000)
+     */
+    private static synchronized HikariDataSource createPooledDataSource(String user, String pw, String connection_str) {
+        if (pooledDataSource != null) {
+            return pooledDataSource;
+        }
+        int poolSize = intFromEnv("DB_POOL_SIZE", 10);
+        int statementCacheSize = intFromEnv("DB_STATEMENT_CACHE_SIZE", 250);
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("persons-pool");
+        config.setJdbcUrl(connection_str);
+        config.setUsername(user);
+        config.setPassword(pw);
+        config.setDriverClassName("com.mysql.cj.jdbc.Driver");
+        config.setMaximumPoolSize(poolSize);
+        config.setMinimumIdle(intFromEnv("DB_POOL_MIN_IDLE", poolSize));
+        config.setConnectionTimeout(intFromEnv("DB_CONNECTION_TIMEOUT_MS", 30000));
+        config.setValidationTimeout(intFromEnv("DB_VALIDATION_TIMEOUT_MS", 5000));
+        if (statementCacheSize > 0) {
+            //Caching is done by the MySQL driver, per connection
+            config.addDataSourceProperty("cachePrepStmts", "true");
+            config.addDataSourceProperty("useServerPrepStmts", "true");
+            config.addDataSourceProperty("prepStmtCacheSize", String.valueOf(statementCacheSize));
+            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        }
+        poolMetrics = new PoolMetrics();
+        config.setMetricsTrackerFactory(poolMetrics);
+        pooledDataSource = new HikariDataSource(config);
+        poolMetrics.setDataSource(pooledDataSource);
+        System.out.println("DB_POOL        -->hikari, size " + poolSize + ", statement cache " + statementCacheSize);
+        return pooledDataSource;
+    }
+
+    private static int intFromEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * @return the state of the connection pool, or a PoolStatsDTO with
+     * pooled=false when EclipseLink's own pool is used
+     */
+    public static synchronized PoolStatsDTO getPoolStats() {
+        return poolMetrics == null ? new PoolStatsDTO() : poolMetrics.getStats();
+    }
 }
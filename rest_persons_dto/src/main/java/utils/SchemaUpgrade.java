@@ -0,0 +1,122 @@
+package utils;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Brings a PERSON table created by an older version of this application up
+ * to date. The pu unit's schema action "create" only creates missing tables,
+ * it never adds columns or indexes to a table that is already there, so
+ * without this every query selecting p.version or p.changeSeq fails on such
+ * a database.
+ *
+ * Reads the table's columns and indexes from the JDBC metadata and adds what
+ * is missing: the VERSION and CHANGESEQ columns, the search and change feed
+ * indexes, and TIMESTAMP instead of DATE for CREATED and LASTEDITED, which
+ * the Last-Modified header needs. A table that is up to date costs two
+ * metadata reads. Runs once, when PersonFacade is created, before it reads
+ * or writes anything.
+ *
+ * SCHEMA_UPGRADE=false turns it off, for databases whose schema is managed
+ * by hand.
+ */
+public class SchemaUpgrade {
+
+    private static final Logger LOG = Logger.getLogger(SchemaUpgrade.class.getName());
+    private static final String TABLE = "PERSON";
+
+    //Column -> what to add it as, in the order of the entity
+    private static final Map<String, String> COLUMNS = new LinkedHashMap<>();
+    //Index -> its columns, the same as the @Index annotations of Person
+    private static final Map<String, String> INDEXES = new LinkedHashMap<>();
+
+    static {
+        COLUMNS.put("VERSION", "INTEGER DEFAULT 0 NOT NULL");
+        COLUMNS.put("CHANGESEQ", "BIGINT DEFAULT 0 NOT NULL");
+        INDEXES.put("idx_person_name", "LASTNAME, FIRSTNAME");
+        INDEXES.put("idx_person_first_name", "FIRSTNAME");
+        INDEXES.put("idx_person_phone", "PHONE");
+        INDEXES.put("idx_person_change_seq", "CHANGESEQ, ID");
+    }
+
+    private SchemaUpgrade() {
+    }
+
+    public static void run(EntityManagerFactory emf) {
+        if ("false".equalsIgnoreCase(System.getenv("SCHEMA_UPGRADE"))) {
+            return;
+        }
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            upgrade(em.unwrap(Connection.class));
+            em.getTransaction().commit();
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Could not upgrade the " + TABLE + " table", ex);
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    private static void upgrade(Connection connection) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        String table = meta.storesLowerCaseIdentifiers() ? TABLE.toLowerCase(Locale.ROOT) : TABLE;
+        Map<String, Integer> columns = new HashMap<>();
+        try (ResultSet rs = meta.getColumns(connection.getCatalog(), null, table, null)) {
+            while (rs.next()) {
+                columns.put(rs.getString("COLUMN_NAME").toUpperCase(Locale.ROOT), rs.getInt("DATA_TYPE"));
+            }
+        }
+        if (columns.isEmpty()) {
+            //Not created yet, the schema action makes it from the entity
+            return;
+        }
+        Set<String> indexes = new HashSet<>();
+        try (ResultSet rs = meta.getIndexInfo(connection.getCatalog(), null, table, false, false)) {
+            while (rs.next()) {
+                if (rs.getString("INDEX_NAME") != null) {
+                    indexes.add(rs.getString("INDEX_NAME").toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (Map.Entry<String, String> column : COLUMNS.entrySet()) {
+                if (!columns.containsKey(column.getKey())) {
+                    execute(statement, "ALTER TABLE " + table + " ADD " + column.getKey() + " " + column.getValue());
+                }
+            }
+            for (String column : new String[]{"CREATED", "LASTEDITED"}) {
+                if (columns.get(column) != null && columns.get(column) == Types.DATE) {
+                    execute(statement, "ALTER TABLE " + table + " MODIFY " + column + " DATETIME");
+                }
+            }
+            for (Map.Entry<String, String> index : INDEXES.entrySet()) {
+                if (!indexes.contains(index.getKey().toUpperCase(Locale.ROOT))) {
+                    execute(statement, "CREATE INDEX " + index.getKey() + " ON " + table + " (" + index.getValue() + ")");
+                }
+            }
+        }
+    }
+
+    private static void execute(Statement statement, String ddl) throws SQLException {
+        LOG.log(Level.INFO, "Upgrading the schema: {0}", ddl);
+        statement.executeUpdate(ddl);
+    }
+}
@@ -0,0 +1,232 @@
+package utils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.persistence.internal.sessions.AbstractRecord;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.Record;
+import org.eclipse.persistence.sessions.SessionProfiler;
+import org.eclipse.persistence.sessions.SessionProfilerAdapter;
+
+/**
+ * An EclipseLink session profiler that counts the SQL statements run, the
+ * rows they returned and the time spent in the database. EMF_Creator sets
+ * it as eclipselink.profiler on every persistence unit, unless
+ * SQL_PROFILE=false.
+ *
+ * The totals of all statements are kept here. To count the statements of
+ * one HTTP request, SqlProfileFilter starts a Profile on the request thread,
+ * and every statement run on that thread is added to it. DbExecutor carries
+ * the Profile over to its threads.
+ *
+ * A statement is counted when EclipseLink prepares it, and a JDBC batch of
+ * inserts or updates counts as one statement. EclipseLink also reports
+ * closing a statement as a StatementExecute, so counting those would count
+ * every statement twice. The time is that of executing and closing the
+ * statements, the time to read the rows is not included. Rows are counted
+ * from the results of the queries that ran a statement: the size of a list,
+ * 1 for an object, or the rows an update changed. An insert, update or
+ * delete of an entity counts 1 row even when it is sent later in a batch.
+ * Queries answered from the cache count no statement and no rows.
+ *
+ * For the N+1 check, the entity and JPQL queries (not native or sequence
+ * queries) run at the top are counted by their SQL, see
+ * Profile.getRepeatedSelects.
+ */
+public class SqlProfiler extends SessionProfilerAdapter {
+
+    private static final ThreadLocal<Profile> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Profile> UNTRACKED = ThreadLocal.withInitial(Profile::new);
+
+    private static final LongAdder STATEMENTS = new LongAdder();
+    private static final LongAdder ROWS = new LongAdder();
+    private static final LongAdder NANOS = new LongAdder();
+
+    /**
+     * The SQL work of one request. Only one thread uses it at a time: the
+     * request thread, then the DbExecutor thread, then the thread writing
+     * the response.
+     */
+    public static class Profile {
+
+        private int statements;
+        private long rows;
+        private long nanos;
+        //Set while a statement runs
+        private long statementStart;
+        //How deep in nested query executions, rows are only counted at the top
+        private int depth;
+        //SQL of the SELECTs run -> times, made on the first one
+        private Map<String, Integer> selects;
+        private int repeatedSelects;
+
+        public int getStatements() {
+            return statements;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return the most times the same SELECT was run, with any
+         * parameters. A list read followed by one read per element shows up
+         * here, batched writes do not.
+         */
+        public int getRepeatedSelects() {
+            return repeatedSelects;
+        }
+
+        @Override
+        public String toString() {
+            return "statements=" + statements + "; rows=" + rows + "; db-ms=" + nanos / 1000 / 1000.0;
+        }
+    }
+
+    /**
+     * Starts counting the statements run on this thread in a new Profile.
+     */
+    public static Profile start() {
+        Profile profile = new Profile();
+        CURRENT.set(profile);
+        return profile;
+    }
+
+    /**
+     * Stops counting in the profile on this thread, if it is the given one.
+     */
+    public static void end(Profile profile) {
+        if (CURRENT.get() == profile) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * @return the profile statements on this thread are counted in, or null
+     */
+    public static Profile current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes statements on this thread count in the given profile, e.g. on a
+     * DbExecutor thread doing work for a request. Null stops counting.
+     */
+    public static void resume(Profile profile) {
+        if (profile == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(profile);
+        }
+    }
+
+    public static long getStatements() {
+        return STATEMENTS.sum();
+    }
+
+    public static long getRows() {
+        return ROWS.sum();
+    }
+
+    public static long getNanos() {
+        return NANOS.sum();
+    }
+
+    //Without a weight above NONE EclipseLink does not call the profiler at all
+    @Override
+    public int getProfileWeight() {
+        return SessionProfiler.ALL;
+    }
+
+    @Override
+    public void startOperationProfile(String operation, DatabaseQuery query, int weight) {
+        if (SessionProfiler.SqlPrepare.equals(operation)) {
+            profile().statements++;
+            STATEMENTS.increment();
+            return;
+        }
+        if (!SessionProfiler.StatementExecute.equals(operation)) {
+            return;
+        }
+        Profile profile = profile();
+        if (profile.statementStart == 0) {
+            profile.statementStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void endOperationProfile(String operation, DatabaseQuery query, int weight) {
+        if (!SessionProfiler.StatementExecute.equals(operation)) {
+            return;
+        }
+        Profile profile = profile();
+        //EclipseLink may end a statement twice on an error, time it once
+        if (profile.statementStart != 0) {
+            long nanos = System.nanoTime() - profile.statementStart;
+            profile.statementStart = 0;
+            profile.nanos += nanos;
+            NANOS.add(nanos);
+        }
+    }
+
+    @Override
+    public Object profileExecutionOfQuery(DatabaseQuery query, Record row, AbstractSession session) {
+        Profile profile = profile();
+        int before = profile.statements;
+        profile.depth++;
+        Object result;
+        try {
+            result = session.internalExecuteQuery(query, (AbstractRecord) row);
+        } finally {
+            profile.depth--;
+        }
+        if (profile.depth != 0) {
+            return result;
+        }
+        if (query.isObjectLevelModifyQuery()) {
+            //One row, the statement may only be sent with a later batch
+            profile.rows++;
+            ROWS.increment();
+        } else if (profile.statements != before) {
+            long rows = rows(result);
+            profile.rows += rows;
+            ROWS.add(rows);
+            if (query.isObjectLevelReadQuery() && query.getSQLString() != null) {
+                countSelect(profile, query.getSQLString());
+            }
+        }
+        return result;
+    }
+
+    private static void countSelect(Profile profile, String sql) {
+        if (profile.selects == null) {
+            profile.selects = new HashMap<>();
+        }
+        int times = profile.selects.merge(sql, 1, Integer::sum);
+        profile.repeatedSelects = Math.max(profile.repeatedSelects, times);
+    }
+
+    //Statements outside a request are counted in a profile of the thread no one reads
+    private static Profile profile() {
+        Profile profile = CURRENT.get();
+        return profile != null ? profile : UNTRACKED.get();
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Integer) {
+            //The rows changed by an update or delete
+            return (Integer) result;
+        }
+        return result == null ? 0 : 1;
+    }
+}
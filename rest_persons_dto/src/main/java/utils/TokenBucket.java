@@ -0,0 +1,50 @@
+package utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket rate limit: holds up to burst tokens, gets ratePerSecond
+ * new ones a second, and each request takes one. The tokens are only
+ * counted up when the bucket is used, so an idle bucket costs nothing.
+ */
+public class TokenBucket {
+
+    private final double ratePerNano;
+    private final double burst;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double ratePerSecond, double burst) {
+        this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise the nanoseconds until there
+     * is one
+     */
+    public synchronized long tryTake() {
+        refill();
+        if (tokens >= 1) {
+            tokens--;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / ratePerNano);
+    }
+
+    /**
+     * @return true if the bucket is full, so forgetting it changes nothing
+     */
+    public synchronized boolean isFull() {
+        refill();
+        return tokens >= burst;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+    }
+}
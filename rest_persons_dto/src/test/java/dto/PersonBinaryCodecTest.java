@@ -0,0 +1,132 @@
+package dto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class PersonBinaryCodecTest {
+
+    private static void assertSamePerson(PersonDTO expected, PersonDTO actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getfName(), actual.getfName());
+        assertEquals(expected.getlName(), actual.getlName());
+        assertEquals(expected.getPhone(), actual.getPhone());
+    }
+
+    @Test
+    public void testPersonRoundTrip() throws Exception {
+        PersonDTO p = new PersonDTO(42, "Kurt", "Wonnegut", "12345678");
+        assertSamePerson(p, PersonBinaryCodec.personFromBytes(PersonBinaryCodec.toBytes(p)));
+    }
+
+    @Test
+    public void testMissingFieldsStayNull() throws Exception {
+        PersonDTO p = new PersonDTO("Kurt", "Wonnegut", null);
+        PersonDTO read = PersonBinaryCodec.personFromBytes(PersonBinaryCodec.toBytes(p));
+        assertSamePerson(p, read);
+        assertNull(read.getId());
+        assertNull(read.getPhone());
+    }
+
+    @Test
+    public void testEmptyAndNonAsciiStrings() throws Exception {
+        PersonDTO p = new PersonDTO(1, "Ærø Øster", "", "å中😀");
+        assertSamePerson(p, PersonBinaryCodec.personFromBytes(PersonBinaryCodec.toBytes(p)));
+    }
+
+    @Test
+    public void testLargeIdsAndLongStrings() throws Exception {
+        //Long enough for a two byte length, short enough for MAX_STRING_BYTES
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longName.append("Name").append(i);
+        }
+        for (int id : new int[]{0, 127, 128, 16383, 16384, Integer.MAX_VALUE}) {
+            PersonDTO p = new PersonDTO(id, longName.toString(), "L", "P");
+            assertSamePerson(p, PersonBinaryCodec.personFromBytes(PersonBinaryCodec.toBytes(p)));
+        }
+    }
+
+    @Test
+    public void testPageRoundTrip() throws Exception {
+        List<PersonDTO> all = new ArrayList<>();
+        for (int i = 1; i <= 300; i++) {
+            all.add(new PersonDTO(i, "First" + i, "Last" + i, i % 2 == 0 ? null : "" + i));
+        }
+        PersonsDTO page = new PersonsDTO();
+        page.setAll(all);
+        page.setNext(300);
+        PersonsDTO read = PersonBinaryCodec.personsFromBytes(PersonBinaryCodec.toBytes(page));
+        assertEquals(300, read.size());
+        assertEquals(300, (int) read.getNext());
+        for (int i = 0; i < all.size(); i++) {
+            assertSamePerson(all.get(i), read.getAll().get(i));
+        }
+    }
+
+    @Test
+    public void testLastAndEmptyPage() throws Exception {
+        PersonsDTO last = new PersonsDTO();
+        last.setAll(Arrays.asList(new PersonDTO(1, "A", "B", "1")));
+        assertNull(PersonBinaryCodec.personsFromBytes(PersonBinaryCodec.toBytes(last)).getNext());
+        PersonsDTO empty = new PersonsDTO();
+        assertEquals(0, PersonBinaryCodec.personsFromBytes(PersonBinaryCodec.toBytes(empty)).size());
+    }
+
+    @Test
+    public void testSmallerThanJson() throws Exception {
+        PersonDTO p = new PersonDTO(12345, "Kurt", "Wonnegut", "12345678");
+        String json = "{\"id\":12345,\"fName\":\"Kurt\",\"lName\":\"Wonnegut\",\"phone\":\"12345678\"}";
+        assertTrue(PersonBinaryCodec.toBytes(p).length < json.length() / 2);
+    }
+
+    @Test
+    public void testSeveralBodiesInOneStream() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PersonBinaryCodec.write(new PersonDTO(1, "A", "B", "1"), out);
+        PersonBinaryCodec.write(new PersonDTO(2, "C", "D", "2"), out);
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertEquals(1, (int) PersonBinaryCodec.readPerson(in).getId());
+        assertEquals(2, (int) PersonBinaryCodec.readPerson(in).getId());
+    }
+
+    @Test
+    public void testRejectsBadInput() throws Exception {
+        byte[] person = PersonBinaryCodec.toBytes(new PersonDTO(1, "Kurt", "Wonnegut", "1"));
+        assertThrows(EOFException.class, () -> PersonBinaryCodec.personFromBytes(Arrays.copyOf(person, person.length - 2)));
+        assertThrows(IOException.class, () -> PersonBinaryCodec.personsFromBytes(person), "A person is not a list");
+        byte[] badVersion = person.clone();
+        badVersion[0] = 99;
+        assertThrows(IOException.class, () -> PersonBinaryCodec.personFromBytes(badVersion));
+    }
+
+    @Test
+    public void testRejectsBadStringLengths() throws Exception {
+        //A first name of 2 GB, and one of -1 bytes
+        byte[] huge = {1, 'P', 2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        byte[] negative = {1, 'P', 2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        assertThrows(IOException.class, () -> PersonBinaryCodec.personFromBytes(huge));
+        assertThrows(IOException.class, () -> PersonBinaryCodec.personFromBytes(negative));
+        char[] longest = new char[PersonBinaryCodec.MAX_STRING_BYTES];
+        Arrays.fill(longest, 'a');
+        PersonDTO p = new PersonDTO(1, new String(longest), "B", "1");
+        assertEquals(p.getfName(), PersonBinaryCodec.personFromBytes(PersonBinaryCodec.toBytes(p)).getfName());
+    }
+
+    @Test
+    public void testRejectsNegativeCount() throws Exception {
+        //A list of -1 persons, with no flags
+        byte[] negative = {1, 'L', 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        assertThrows(IOException.class, () -> PersonBinaryCodec.personsFromBytes(negative));
+    }
+}
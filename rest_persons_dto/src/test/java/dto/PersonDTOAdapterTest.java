@@ -0,0 +1,54 @@
+package dto;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.util.Arrays;
+import java.util.Date;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+public class PersonDTOAdapterTest {
+
+    private static final Gson ADAPTED = new GsonBuilder()
+            .registerTypeAdapter(PersonDTO.class, new PersonDTOAdapter())
+            .registerTypeAdapter(PersonsDTO.class, new PersonsDTOAdapter())
+            .create();
+    //What the resources used to send, the adapters must not change the JSON
+    private static final Gson REFLECTIVE = new Gson();
+
+    @Test
+    public void testWritesSameJsonAsReflection() {
+        PersonDTO p = new PersonDTO(1, "Kurt", "Wonnegut", "12345678", 3, new Date());
+        assertEquals(REFLECTIVE.toJson(p), ADAPTED.toJson(p));
+        PersonDTO noPhone = new PersonDTO(2, "Hans", "Hansen", null);
+        assertEquals(REFLECTIVE.toJson(noPhone), ADAPTED.toJson(noPhone));
+    }
+
+    @Test
+    public void testWritesPage() {
+        PersonsDTO page = new PersonsDTO();
+        page.setAll(Arrays.asList(new PersonDTO(1, "A", "B", "1"), new PersonDTO(2, "C", "D", "2")));
+        assertEquals(REFLECTIVE.toJson(page), ADAPTED.toJson(page));
+        page.setNext(2);
+        assertEquals(REFLECTIVE.toJson(page), ADAPTED.toJson(page));
+    }
+
+    @Test
+    public void testReadsPerson() {
+        PersonDTO p = ADAPTED.fromJson("{\"fName\":\"Kurt\",\"unknown\":[1,2],\"lName\":\"Wonnegut\",\"phone\":null,\"id\":\"7\"}", PersonDTO.class);
+        assertEquals(7, (int) p.getId());
+        assertEquals("Kurt", p.getfName());
+        assertEquals("Wonnegut", p.getlName());
+        assertNull(p.getPhone());
+    }
+
+    @Test
+    public void testReadsPage() {
+        PersonsDTO page = ADAPTED.fromJson("{\"all\":[{\"id\":1,\"fName\":\"A\",\"lName\":\"B\"}],\"next\":1}", PersonsDTO.class);
+        assertEquals(1, page.size());
+        assertEquals("A", page.getAll().get(0).getfName());
+        assertEquals(1, (int) page.getNext());
+    }
+}
@@ -0,0 +1,27 @@
+package exceptions;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+
+public class ErrorResponsesTest {
+
+    @Test
+    public void testFixedMessagesAreCached() {
+        byte[] body = ErrorResponses.body(404, "No person with provided id found");
+        assertSame(body, ErrorResponses.body(404, "No person with provided id found"));
+        assertEquals("{\"code\":404,\"message\":\"No person with provided id found\"}", new String(body, StandardCharsets.UTF_8));
+        assertSame(ErrorResponses.body(500, "Internal Server Error"), ErrorResponses.body(500, "Internal Server Error"),
+                "Expect the reason phrases to be cached");
+    }
+
+    @Test
+    public void testOtherMessagesAreNotCached() {
+        String message = "Not a valid token: " + "junk";
+        assertNotSame(ErrorResponses.body(400, message), ErrorResponses.body(400, message),
+                "Expect a message that is not fixed to get a new body every time");
+    }
+}
@@ -0,0 +1,105 @@
+package facades;
+
+import entities.Person;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import utils.EMF_Creator;
+
+/**
+ * Compares concurrent creates with a transaction each against the same
+ * creates through GroupCommitWriter, with a few batch sizes. Prints the
+ * creates per second. The gain depends on what a commit costs, so run it
+ * against MySQL (the test database), where each commit waits for an fsync.
+ *
+ * Tagged "benchmark" so it is skipped by a normal build. Run it with:
+ * mvn test -Pbenchmark -Dtest=GroupCommitBenchmarkTest
+ */
+@Tag("benchmark")
+public class GroupCommitBenchmarkTest {
+
+    private static final int THREADS = 32;
+    private static final int PERSONS_PER_THREAD = 100;
+
+    private static EntityManagerFactory emf;
+
+    @BeforeAll
+    public static void setUpClass() {
+        emf = EMF_Creator.createEntityManagerFactoryForTest();
+    }
+
+    @AfterAll
+    public static void tearDownClass() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNamedQuery("Person.deleteAllRows").executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void addOne(Person person) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.persist(person);
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    //Runs PERSONS_PER_THREAD creates on each of THREADS threads, returns creates per second
+    private static double run(Consumer<Person> add) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> threads = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                threads.add(pool.submit(() -> {
+                    for (int i = 0; i < PERSONS_PER_THREAD; i++) {
+                        add.accept(new Person("First" + thread, "Last" + i, "" + i));
+                    }
+                }));
+            }
+            for (Future<?> f : threads) {
+                f.get();
+            }
+            double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+            return THREADS * PERSONS_PER_THREAD / seconds;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void compareAddPerson() throws Exception {
+        //Warm up the connections, statements and the JIT
+        run(GroupCommitBenchmarkTest::addOne);
+
+        System.out.printf("transaction per person          %8.0f creates/s%n", run(GroupCommitBenchmarkTest::addOne));
+        for (int batchSize : new int[]{8, 32, 128}) {
+            GroupCommitWriter writer = new GroupCommitWriter(emf, new ChangeSequence(0), batchSize, 2, 10000);
+            try {
+                double rate = run(writer::add);
+                System.out.printf("group commit, batches of %-4d   %8.0f creates/s (%d commits)%n",
+                        batchSize, rate, writer.getStats().getCommits());
+            } finally {
+                writer.close();
+            }
+        }
+    }
+}
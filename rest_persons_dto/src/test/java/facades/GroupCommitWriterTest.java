@@ -0,0 +1,110 @@
+package facades;
+
+import dto.GroupCommitStatsDTO;
+import dto.PersonDTO;
+import entities.Person;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import utils.EMF_Creator;
+
+
+public class GroupCommitWriterTest {
+
+    private static final int CALLERS = 20;
+
+    private static EntityManagerFactory emf;
+
+    @BeforeAll
+    public static void setUpClass() {
+        emf = EMF_Creator.createEntityManagerFactoryForTest();
+    }
+
+    @AfterAll
+    public static void tearDownClass() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNamedQuery("Person.deleteAllRows").executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentAddsShareCommits() throws Exception {
+        //A long linger, so the callers are sure to end up in the same batches
+        GroupCommitWriter writer = new GroupCommitWriter(emf, new ChangeSequence(0), 100, 200, 1000);
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<PersonDTO>> calls = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                Person person = new Person("Group" + i, "Commit", "" + i);
+                calls.add(pool.submit(() -> writer.add(person)));
+            }
+            Set<Integer> ids = new HashSet<>();
+            for (int i = 0; i < CALLERS; i++) {
+                PersonDTO added = calls.get(i).get(10, TimeUnit.SECONDS);
+                assertNotNull(added.getId());
+                assertEquals("Group" + i, added.getfName(), "Expect every caller to get its own person");
+                ids.add(added.getId());
+            }
+            assertEquals(CALLERS, ids.size());
+            GroupCommitStatsDTO stats = writer.getStats();
+            assertEquals(CALLERS, stats.getPersons());
+            assertTrue(stats.getCommits() < CALLERS, "Expect fewer commits than persons, was " + stats.getCommits());
+        } finally {
+            pool.shutdownNow();
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testBadPersonOnlyFailsItsCaller() throws Exception {
+        GroupCommitWriter writer = new GroupCommitWriter(emf, new ChangeSequence(0), 100, 200, 1000);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            PersonDTO existing = writer.add(new Person("Existing", "Person", "1"));
+            Person duplicate = new Person("Bad", "Person", "2");
+            duplicate.setId(existing.getId());
+            Future<PersonDTO> good = pool.submit(() -> writer.add(new Person("Good", "Person", "3")));
+            Future<PersonDTO> bad = pool.submit(() -> writer.add(duplicate));
+            assertEquals("Good", good.get(10, TimeUnit.SECONDS).getfName());
+            assertEquals(1, writer.getStats().getRetries(), "Expect the shared commit to fail and be retried");
+            try {
+                bad.get(10, TimeUnit.SECONDS);
+                throw new AssertionError("Expect the bad person to fail");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof PersistenceException, "Was " + ex.getCause());
+            }
+        } finally {
+            pool.shutdownNow();
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testAddAfterCloseStillSaves() throws Exception {
+        GroupCommitWriter writer = new GroupCommitWriter(emf, new ChangeSequence(0), 100, 200, 1000);
+        writer.close();
+        PersonDTO added = writer.add(new Person("Closed", "Writer", "4"));
+        assertNotNull(added.getId(), "Expect the person to be saved on the caller's thread");
+        assertEquals(0, writer.getStats().getCommits(), "Expect no group commits after close");
+    }
+}
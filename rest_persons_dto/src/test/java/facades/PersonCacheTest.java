@@ -0,0 +1,83 @@
+package facades;
+
+import dto.CacheStatsDTO;
+import dto.PersonDTO;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+
+public class PersonCacheTest {
+
+    private static PersonDTO person(int id) {
+        return new PersonDTO(id, "First" + id, "Last" + id, "" + id);
+    }
+
+    //Caches a person as a read from the database does
+    private static void load(PersonCache cache, PersonDTO person) {
+        cache.putIfUnchanged(person, cache.stamp());
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        PersonCache cache = new PersonCache(10, 60);
+        PersonDTO p1 = person(1);
+        load(cache, p1);
+        assertSame(p1, cache.get(1));
+        assertNull(cache.get(2));
+        CacheStatsDTO stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        PersonCache cache = new PersonCache(2, 60);
+        load(cache, person(1));
+        load(cache, person(2));
+        cache.get(1); //1 is now more recently used than 2
+        load(cache, person(3));
+        assertNull(cache.get(2), "Expect the least recently used person to be evicted");
+        assertEquals(1, (int) cache.get(1).getId());
+        assertEquals(3, (int) cache.get(3).getId());
+        assertEquals(1, cache.getStats().getEvictions());
+    }
+
+    @Test
+    public void testExpires() {
+        PersonCache cache = new PersonCache(10, 0);
+        load(cache, person(1));
+        assertNull(cache.get(1), "Expect the person to have expired");
+        assertEquals(1, cache.getStats().getExpirations());
+    }
+
+    @Test
+    public void testInvalidate() {
+        PersonCache cache = new PersonCache(10, 60);
+        load(cache, person(1));
+        cache.invalidate(1);
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void testStaleReadIsNotCached() {
+        PersonCache cache = new PersonCache(10, 60);
+        long stamp = cache.stamp();
+        cache.invalidate(1); //a write happens while the read is running
+        cache.putIfUnchanged(person(1), stamp);
+        assertNull(cache.get(1), "Expect a read that raced a write not to be cached");
+
+        stamp = cache.stamp();
+        cache.putIfUnchanged(person(1), stamp);
+        assertEquals(1, (int) cache.get(1).getId());
+    }
+
+    @Test
+    public void testDisabled() {
+        PersonCache cache = new PersonCache(0, 60);
+        load(cache, person(1));
+        assertNull(cache.get(1));
+    }
+}
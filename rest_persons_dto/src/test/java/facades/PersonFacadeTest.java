@@ -1,9 +1,19 @@
 package facades;
 
+import dto.BatchItemDTO;
+import dto.BatchResultDTO;
+import dto.BulkEditDTO;
+import dto.BulkResultDTO;
+import dto.ChangesDTO;
 import dto.PersonDTO;
+import dto.PersonsDTO;
 import entities.Person;
 import exceptions.MissingInputException;
+import exceptions.PersonConflictException;
 import exceptions.PersonNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.AfterAll;
@@ -12,7 +22,12 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import utils.EMF_Creator;
 
 
@@ -81,12 +96,121 @@ public class PersonFacadeTest {
         assertEquals(2, facade.getAllPersons().size(), "Expect two persons in database");
     }
 
+    @Test
+    public void testSearchPersons() throws Exception {
+        facade.addPerson("Bo", "Hanson", "13370000");
+        PersonsDTO byLastName = facade.searchPersons(null, "Han", null, 0, 10);
+        assertEquals(2, byLastName.size(), "Expect Hansen and Hanson");
+        PersonsDTO byBoth = facade.searchPersons("Bob", "Han", null, 0, 10);
+        assertEquals(1, byBoth.size());
+        assertEquals(p1.getId(), byBoth.getAll().get(0).getId());
+        PersonsDTO byPhone = facade.searchPersons(null, null, "1337", 0, 10);
+        assertEquals(2, byPhone.size());
+        assertEquals(0, facade.searchPersons(null, "ansen", null, 0, 10).size(), "Expect only prefixes to match");
+    }
+
+    @Test
+    public void testSearchPersonsPaged() throws Exception {
+        facade.addPerson("Bo", "Hanson", "13370000");
+        PersonsDTO first = facade.searchPersons(null, "Han", null, 0, 1);
+        assertEquals(1, first.size());
+        assertEquals("Hansen", first.getAll().get(0).getlName(), "Expect the matches ordered by name");
+        assertEquals(1, (int) first.getNext(), "Expect next to be the offset of the next page");
+        PersonsDTO second = facade.searchPersons(null, "Han", null, first.getNext(), 1);
+        assertEquals(1, second.size());
+        assertEquals("Hanson", second.getAll().get(0).getlName());
+        assertNull(second.getNext());
+    }
+
+    @Test
+    public void testSearchPersonsWildcardsAreLiteral() throws Exception {
+        facade.addPerson("Per", "50%_off!", "1");
+        assertEquals(0, facade.searchPersons(null, "%", null, 0, 10).size());
+        assertEquals(0, facade.searchPersons(null, "_", null, 0, 10).size());
+        assertEquals(1, facade.searchPersons(null, "50%_", null, 0, 10).size());
+        assertEquals(1, facade.searchPersons(null, "50%_off!", null, 0, 10).size());
+    }
+
+    @Test
+    public void testSearchPersonsMissingInput() {
+        assertThrows(MissingInputException.class, () -> facade.searchPersons(null, "", null, 0, 10));
+    }
+
+    @Test
+    public void testSuggestPersons() throws Exception {
+        facade.rebuildSearchIndex();
+        assertEquals(p1.getId(), facade.suggestPersons("ANSE", 10).getAll().get(0).getId());
+        PersonDTO added = facade.addPerson("Bo", "Hanson", "13370000");
+        assertEquals(2, facade.suggestPersons("1337", 10).size(), "Expect a new person to be suggested");
+        added.setlName("Larson");
+        facade.editPerson(added);
+        assertEquals(0, facade.suggestPersons("hanson", 10).size(), "Expect the old name to be gone");
+        assertEquals(1, facade.suggestPersons("bo lars", 10).size());
+        facade.deletePerson(added.getId());
+        assertEquals(0, facade.suggestPersons("lars", 10).size());
+        facade.editPersons(new BulkEditDTO(Arrays.asList(p1.getId()), null, "Olsen", null));
+        assertEquals(p1.getId(), facade.suggestPersons("olsen", 10).getAll().get(0).getId(), "Expect bulk edits to be indexed");
+    }
+
+    @Test
+    public void testSuggestPersonsMissingInput() {
+        assertThrows(MissingInputException.class, () -> facade.suggestPersons(" ", 10));
+    }
+
+    @Test
+    public void testGetPersonsPage() {
+        Integer lowestId = Math.min(p1.getId(), p2.getId());
+        Integer highestId = Math.max(p1.getId(), p2.getId());
+
+        PersonsDTO first = facade.getPersonsPage(0, 1);
+        assertEquals(1, first.size(), "Expect one person on the first page");
+        assertEquals(lowestId, first.getAll().get(0).getId());
+        assertEquals(lowestId, first.getNext(), "Expect the cursor to point at the last person on the page");
+
+        PersonsDTO second = facade.getPersonsPage(first.getNext(), 1);
+        assertEquals(highestId, second.getAll().get(0).getId());
+        assertNull(second.getNext(), "Expect no cursor on the last page");
+    }
+
+    @Test
+    public void testForEachPerson() {
+        List<PersonDTO> streamed = new ArrayList<>();
+        facade.forEachPerson(streamed::add);
+        assertEquals(2, streamed.size(), "Expect both persons to be streamed");
+        assertTrue(streamed.get(0).getId() < streamed.get(1).getId(), "Expect the persons in id order");
+    }
+
     @Test
     public void testGetPerson() throws PersonNotFoundException {
         PersonDTO p1DTO = facade.getPerson(p1.getId());
         assertEquals(p1DTO.getfName(), p1.getFirstName(), "Expect the same firstname");
     }
 
+    @Test
+    public void testGetPersonIsCached() throws PersonNotFoundException {
+        facade.getPerson(p1.getId());
+        long hits = facade.getCacheStats().getHits();
+        PersonDTO p1DTO = facade.getPerson(p1.getId());
+        assertEquals(hits + 1, facade.getCacheStats().getHits(), "Expect the second read to be a cache hit");
+        assertEquals(p1.getFirstName(), p1DTO.getfName());
+    }
+
+    @Test
+    public void testEditPersonUpdatesCache() throws PersonNotFoundException, MissingInputException {
+        facade.getPerson(p2.getId());
+        PersonDTO newData = new PersonDTO("Jonas", "Jørgensen", "35363738");
+        newData.setId(p2.getId());
+        facade.editPerson(newData);
+        assertEquals("Jonas", facade.getPerson(p2.getId()).getfName(), "Expect the edit to be visible through the cache");
+    }
+
+    @Test
+    public void testDeletePersonInvalidatesCache() throws PersonNotFoundException {
+        facade.getPerson(p1.getId());
+        facade.deletePerson(p1.getId());
+        assertThrows(PersonNotFoundException.class, () -> facade.getPerson(p1.getId()));
+    }
+
     @Test()
     public void testGetPersonException() {
         try {
@@ -113,6 +237,25 @@ public class PersonFacadeTest {
         }
     }
 
+    @Test
+    public void testAddPersons() {
+        List<PersonDTO> persons = new ArrayList<>();
+        persons.add(new PersonDTO("Allan", "Winther", "11111111"));
+        persons.add(new PersonDTO("", "Winther", "22222222"));
+        persons.add(new PersonDTO("Bente", "Svendsen", "33333333"));
+        BatchResultDTO result = facade.addPersons(persons);
+        assertEquals(2, result.getCreated());
+        assertEquals(1, result.getFailed());
+        assertEquals(4, facade.getAllPersons().size(), "Expect the two valid persons to be added");
+
+        BatchItemDTO invalid = result.getResults().get(1);
+        assertEquals(1, invalid.getIndex());
+        assertEquals(400, invalid.getStatus());
+        assertEquals("First name and/or last name is missing", invalid.getMessage());
+        assertEquals("Bente", result.getResults().get(2).getPerson().getfName());
+        assertNotNull(result.getResults().get(2).getPerson().getId());
+    }
+
     @Test
     public void testEditPerson() throws PersonNotFoundException, MissingInputException {
         PersonDTO newData = new PersonDTO("Jonas", "Jørgensen", "35363738"); //json String
@@ -123,6 +266,46 @@ public class PersonFacadeTest {
         assertEquals(newData.getPhone(), p2New.getPhone(), "Expect the same phone");
     }
 
+    @Test
+    public void testEditPersonBumpsVersion() throws PersonNotFoundException, MissingInputException {
+        PersonDTO before = facade.getPerson(p2.getId());
+        PersonDTO newData = new PersonDTO("Jonas", "Jørgensen", "35363738");
+        newData.setId(p2.getId());
+        PersonDTO after = facade.editPerson(newData);
+        assertEquals(before.getVersion() + 1, (int) after.getVersion(), "Expect the version to be incremented");
+        assertNotNull(after.getLastEdited());
+
+        facade.editPersons(new BulkEditDTO(Arrays.asList(p2.getId()), null, null, "11223344"));
+        assertEquals(after.getVersion() + 1, (int) facade.getPerson(p2.getId()).getVersion(), "Expect bulk edits to increment it too");
+    }
+
+    @Test
+    public void testPatchPerson() throws Exception {
+        PersonDTO before = facade.getPerson(p1.getId());
+        PersonDTO changes = new PersonDTO(null, null, "99999999");
+        PersonDTO after = facade.patchPerson(p1.getId(), changes, before.getVersion());
+        assertEquals("99999999", after.getPhone());
+        assertEquals(p1.getFirstName(), after.getfName(), "Expect fields not sent to be unchanged");
+        assertEquals(before.getVersion() + 1, (int) after.getVersion());
+    }
+
+    @Test
+    public void testPatchPersonConflict() throws Exception {
+        PersonDTO before = facade.getPerson(p1.getId());
+        facade.patchPerson(p1.getId(), new PersonDTO(null, null, "99999999"), before.getVersion());
+        PersonConflictException ex = assertThrows(PersonConflictException.class,
+                () -> facade.patchPerson(p1.getId(), new PersonDTO(null, null, "88888888"), before.getVersion()));
+        assertEquals("The person was changed by someone else, get it again and retry", ex.getMessage());
+        assertEquals("99999999", facade.getPerson(p1.getId()).getPhone(), "Expect the first change to be kept");
+    }
+
+    @Test
+    public void testPatchPersonExceptionNotFound() {
+        PersonNotFoundException ex = assertThrows(PersonNotFoundException.class,
+                () -> facade.patchPerson(999, new PersonDTO(null, null, "99999999"), null));
+        assertEquals("No person with provided id found", ex.getMessage());
+    }
+
     @Test
     public void testEditPersonExceptionNotFound() throws MissingInputException {
         try {
@@ -152,6 +335,86 @@ public class PersonFacadeTest {
         assertEquals(p1DTO.getId(), p1.getId());
     }
 
+    @Test
+    public void testDeletePersons() {
+        BulkResultDTO result = facade.deletePersons(Arrays.asList(p1.getId(), 999, p1.getId()));
+        assertEquals(Arrays.asList(p1.getId()), result.getAffected());
+        assertEquals(Arrays.asList(999), result.getNotFound());
+        assertEquals(1, facade.getAllPersons().size(), "Expect one person left in database");
+    }
+
+    @Test
+    public void testEditPersons() throws PersonNotFoundException, MissingInputException {
+        facade.getPerson(p1.getId());
+        BulkEditDTO edit = new BulkEditDTO(Arrays.asList(p1.getId(), p2.getId(), 999), null, null, "12345678");
+        BulkResultDTO result = facade.editPersons(edit);
+        assertEquals(2, result.getAffected().size());
+        assertEquals(Arrays.asList(999), result.getNotFound());
+        assertEquals("12345678", facade.getPerson(p1.getId()).getPhone(), "Expect the new phone, not the cached one");
+        assertEquals(p1.getFirstName(), facade.getPerson(p1.getId()).getfName(), "Expect the name to be unchanged");
+    }
+
+    @Test
+    public void testEditPersonsExceptionMissingInput() {
+        BulkEditDTO edit = new BulkEditDTO(Arrays.asList(p1.getId()), "", null, null);
+        MissingInputException ex = assertThrows(MissingInputException.class, () -> facade.editPersons(edit));
+        assertEquals("First name and/or last name is missing", ex.getMessage());
+    }
+
+    //Reads the feed to its end, and returns the token for the changes after that
+    private static String latestChangeToken() throws MissingInputException {
+        ChangesDTO changes = facade.getChanges(null, PersonFacade.MAX_PAGE_SIZE);
+        while (changes.isMore()) {
+            changes = facade.getChanges(changes.getNext(), PersonFacade.MAX_PAGE_SIZE);
+        }
+        return changes.getNext();
+    }
+
+    @Test
+    public void testGetChanges() throws Exception {
+        String since = latestChangeToken();
+        PersonDTO added = facade.addPerson("Bo", "Hanson", "13370000");
+        facade.patchPerson(p1.getId(), new PersonDTO(null, null, "12345678"), null);
+        facade.deletePerson(p2.getId());
+        ChangesDTO changes = facade.getChanges(since, 10);
+        assertEquals(2, changes.getChanged().size(), "Expect only the added and the patched person");
+        assertEquals(added.getId(), changes.getChanged().get(0).getId());
+        assertEquals(p1.getId(), changes.getChanged().get(1).getId());
+        assertEquals("12345678", changes.getChanged().get(1).getPhone());
+        assertEquals(Arrays.asList(p2.getId()), changes.getDeleted());
+        assertFalse(changes.isMore());
+
+        ChangesDTO none = facade.getChanges(changes.getNext(), 10);
+        assertEquals(0, none.getChanged().size());
+        assertEquals(0, none.getDeleted().size());
+        assertEquals(changes.getNext(), none.getNext());
+    }
+
+    @Test
+    public void testGetChangesPaged() throws Exception {
+        String since = latestChangeToken();
+        BatchResultDTO batch = facade.addPersons(Arrays.asList(new PersonDTO("Bo", "Hanson", "1"), new PersonDTO("Lis", "Hanson", "2")));
+        facade.deletePersons(Arrays.asList(p1.getId()));
+        List<Integer> changed = new ArrayList<>();
+        List<Integer> deleted = new ArrayList<>();
+        ChangesDTO changes;
+        do {
+            changes = facade.getChanges(since, 1);
+            assertEquals(1, changes.getChanged().size() + changes.getDeleted().size());
+            changes.getChanged().forEach(p -> changed.add(p.getId()));
+            deleted.addAll(changes.getDeleted());
+            since = changes.getNext();
+        } while (changes.isMore());
+        assertEquals(Arrays.asList(batch.getResults().get(0).getPerson().getId(), batch.getResults().get(1).getPerson().getId()), changed);
+        assertEquals(Arrays.asList(p1.getId()), deleted);
+    }
+
+    @Test
+    public void testGetChangesExceptionBadToken() {
+        MissingInputException ex = assertThrows(MissingInputException.class, () -> facade.getChanges("yesterday", 10));
+        assertEquals("Not a valid since token", ex.getMessage());
+    }
+
     @Test
     public void testDeletePersonException() {
         try {
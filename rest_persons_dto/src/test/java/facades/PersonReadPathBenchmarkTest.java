@@ -0,0 +1,190 @@
+package facades;
+
+import dto.PersonDTO;
+import dto.PersonsDTO;
+import entities.Person;
+import exceptions.PersonNotFoundException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import utils.EMF_Creator;
+
+/**
+ * Compares the DTO projection queries, which PersonFacade reads pages with,
+ * to the entity path (find/query the Person entities and copy them into
+ * DTOs). It prints time and allocated bytes per operation for both.
+ *
+ * For single gets both paths go straight to the database layer, past
+ * PersonFacade's own cache. em.find is answered from EclipseLink's shared
+ * cache once the person has been read, so it measures a cache hit against a
+ * database round trip. That is why PersonFacade.getPerson uses em.find.
+ *
+ * Tagged "benchmark" so it is skipped by a normal build. Run it with:
+ * mvn test -Pbenchmark -Dtest=PersonReadPathBenchmarkTest
+ */
+@Tag("benchmark")
+public class PersonReadPathBenchmarkTest {
+
+    private static final int PERSONS = 2000;
+    private static final int ITERATIONS = 10000;
+    private static final int PAGE_SIZE = 500;
+
+    private static EntityManagerFactory emf;
+    private static PersonFacade facade;
+    private static List<Integer> ids = new ArrayList<>();
+
+    @BeforeAll
+    public static void setUpClass() {
+        emf = EMF_Creator.createEntityManagerFactoryForTest();
+        facade = PersonFacade.getPersonFacade(emf);
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNamedQuery("Person.deleteAllRows").executeUpdate();
+            List<Person> persons = new ArrayList<>();
+            for (int i = 0; i < PERSONS; i++) {
+                Person p = new Person("First" + i, "Last" + i, "" + (10000000 + i));
+                em.persist(p);
+                persons.add(p);
+            }
+            em.getTransaction().commit();
+            persons.forEach(p -> ids.add(p.getId()));
+        } finally {
+            em.close();
+        }
+    }
+
+    @AfterAll
+    public static void tearDownClass() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNamedQuery("Person.deleteAllRows").executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    public void compareGetPerson() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            int id = ids.get(random.nextInt(ids.size()));
+            PersonDTO fromEntity = getPersonViaEntity(id);
+            PersonDTO fromProjection = getPersonViaProjection(id);
+            assertEquals(fromEntity.getId(), fromProjection.getId());
+            assertEquals(fromEntity.getfName(), fromProjection.getfName());
+            assertEquals(fromEntity.getlName(), fromProjection.getlName());
+            assertEquals(fromEntity.getPhone(), fromProjection.getPhone());
+        }
+
+        Result entity = measure("getPerson, entity", ITERATIONS, i -> getPersonViaEntity(ids.get(i % ids.size())));
+        Result projection = measure("getPerson, projection", ITERATIONS, i -> getPersonViaProjection(ids.get(i % ids.size())));
+        report(entity, projection);
+    }
+
+    @Test
+    public void compareGetPersonsPage() throws Exception {
+        assertEquals(getPageViaEntity(0).size(), facade.getPersonsPage(0, PAGE_SIZE).size());
+
+        Result entity = measure("page of " + PAGE_SIZE + ", entity", ITERATIONS / 10, i -> getPageViaEntity(0));
+        Result projection = measure("page of " + PAGE_SIZE + ", projection", ITERATIONS / 10, i -> facade.getPersonsPage(0, PAGE_SIZE));
+        report(entity, projection);
+    }
+
+    //The read path PersonFacade used before the projection queries
+    private static PersonDTO getPersonViaEntity(int id) throws PersonNotFoundException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            Person person = em.find(Person.class, id);
+            if (person == null) {
+                throw new PersonNotFoundException("No person with provided id found");
+            }
+            return new PersonDTO(person);
+        } finally {
+            em.close();
+        }
+    }
+
+    private static PersonDTO getPersonViaProjection(int id) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery("SELECT NEW dto.PersonDTO(p.id, p.firstName, p.lastName, p.phone, p.version, p.lastEdited)"
+                    + " FROM Person p WHERE p.id = :id", PersonDTO.class)
+                    .setParameter("id", id)
+                    .getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static PersonsDTO getPageViaEntity(int after) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<Person> query
+                    = em.createQuery("SELECT p FROM Person p WHERE p.id > :after ORDER BY p.id", Person.class);
+            query.setParameter("after", after);
+            query.setMaxResults(PAGE_SIZE);
+            return new PersonsDTO(query.getResultList());
+        } finally {
+            em.close();
+        }
+    }
+
+    private interface Operation {
+
+        Object run(int i) throws Exception;
+    }
+
+    private static class Result {
+
+        String name;
+        double nanosPerOp;
+        double bytesPerOp;
+    }
+
+    private static Result measure(String name, int iterations, Operation op) throws Exception {
+        for (int i = 0; i < iterations / 5; i++) {
+            op.run(i);
+        }
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.run(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = allocatedBytes() - bytesBefore;
+
+        Result result = new Result();
+        result.name = name;
+        result.nanosPerOp = (double) elapsed / iterations;
+        result.bytesPerOp = (double) bytes / iterations;
+        return result;
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static void report(Result entity, Result projection) {
+        for (Result r : new Result[]{entity, projection}) {
+            System.out.println(String.format("%-28s %12.1f us/op %14.0f bytes/op", r.name, r.nanosPerOp / 1000, r.bytesPerOp));
+        }
+        System.out.println(String.format("projection/entity: time %.2f, allocation %.2f",
+                projection.nanosPerOp / entity.nanosPerOp, projection.bytesPerOp / entity.bytesPerOp));
+    }
+}
@@ -0,0 +1,149 @@
+package facades;
+
+import dto.PersonDTO;
+import dto.PersonsDTO;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import utils.EMF_Creator;
+
+/**
+ * Fills the test database with generated persons, times the prefix searches
+ * of PersonFacade and checks with EXPLAIN that the database answers them
+ * with a range scan on the name and phone indexes, not a full table scan.
+ * A "contains" search, which can not use an index, is timed for comparison.
+ *
+ * Tagged "benchmark" so it is skipped by a normal build. Run it with:
+ * mvn test -Pbenchmark -Dtest=PersonSearchBenchmarkTest
+ */
+@Tag("benchmark")
+public class PersonSearchBenchmarkTest {
+
+    private static final int PERSONS = 200000;
+    private static final int ITERATIONS = 200;
+
+    private static EntityManagerFactory emf;
+    private static PersonFacade facade;
+
+    @BeforeAll
+    public static void setUpClass() {
+        emf = EMF_Creator.createEntityManagerFactoryForTest();
+        facade = PersonFacade.getPersonFacade(emf);
+        deleteAll();
+        Random random = new Random(42);
+        List<PersonDTO> chunk = new ArrayList<>();
+        for (int i = 0; i < PERSONS; i++) {
+            chunk.add(new PersonDTO(randomName(random), randomName(random), String.valueOf(10000000 + random.nextInt(90000000))));
+            if (chunk.size() == 10000) {
+                facade.addPersons(chunk);
+                chunk.clear();
+            }
+        }
+        facade.addPersons(chunk);
+    }
+
+    @AfterAll
+    public static void tearDownClass() {
+        deleteAll();
+    }
+
+    private static void deleteAll() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNamedQuery("Person.deleteAllRows").executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static String randomName(Random random) {
+        char[] name = new char[8];
+        name[0] = (char) ('A' + random.nextInt(26));
+        for (int i = 1; i < name.length; i++) {
+            name[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(name);
+    }
+
+    //The plan as text, one line per row of the EXPLAIN output
+    private static String explain(String where, String orderBy) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<?> rows = em.createNativeQuery("EXPLAIN SELECT ID, FIRSTNAME, LASTNAME, PHONE FROM PERSON WHERE " + where
+                    + " ORDER BY " + orderBy + " LIMIT 101").getResultList();
+            StringBuilder plan = new StringBuilder();
+            for (Object row : rows) {
+                plan.append(row instanceof Object[] ? Arrays.toString((Object[]) row) : row).append('\n');
+            }
+            return plan.toString();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void assertUsesIndex(String index, String where, String orderBy) {
+        String plan = explain(where, orderBy);
+        System.out.println("EXPLAIN ... WHERE " + where + "\n" + plan);
+        assertTrue(plan.toLowerCase(Locale.ROOT).contains(index), "Expect the query to use " + index);
+        //ALL is MySQL's access type for a full table scan
+        assertFalse(plan.contains(", ALL,"), "Expect no full table scan");
+    }
+
+    private static void time(String name, Runnable search) {
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            search.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            search.run();
+        }
+        long micros = (System.nanoTime() - start) / 1000 / ITERATIONS;
+        System.out.printf("%-40s %8d us/op%n", name, micros);
+    }
+
+    private static PersonsDTO search(String firstName, String lastName, String phone) {
+        try {
+            return facade.searchPersons(firstName, lastName, phone, 0, PersonFacade.DEFAULT_PAGE_SIZE);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Test
+    public void searchUsesIndexRangeScans() {
+        //The SQL PersonFacade.searchPersons sends for each kind of search
+        assertUsesIndex("idx_person_name", "LASTNAME LIKE 'Kab%' ESCAPE '!'", "LASTNAME, FIRSTNAME, ID");
+        assertUsesIndex("idx_person_name", "LASTNAME LIKE 'Kab%' ESCAPE '!' AND FIRSTNAME LIKE 'M%' ESCAPE '!'", "LASTNAME, FIRSTNAME, ID");
+        assertUsesIndex("idx_person_first_name", "FIRSTNAME LIKE 'Mab%' ESCAPE '!'", "FIRSTNAME, ID");
+        assertUsesIndex("idx_person_phone", "PHONE LIKE '1234%' ESCAPE '!'", "PHONE, ID");
+    }
+
+    @Test
+    public void timeSearches() {
+        System.out.println("Searching " + PERSONS + " persons");
+        time("lastName prefix (3 chars)", () -> search(null, "Kab", null));
+        time("lastName + firstName prefix", () -> search("M", "Kab", null));
+        time("firstName prefix (3 chars)", () -> search("Mab", null, null));
+        time("phone prefix (4 digits)", () -> search(null, null, "1234"));
+        EntityManager em = emf.createEntityManager();
+        try {
+            time("lastName contains, full scan", () -> em.createQuery(
+                    "SELECT p.id FROM Person p WHERE p.lastName LIKE '%kab%' ORDER BY p.lastName, p.firstName, p.id")
+                    .setMaxResults(101).getResultList());
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package facades;
+
+import dto.PersonDTO;
+import dto.SearchIndexStatsDTO;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class PersonSearchIndexTest {
+
+    private PersonSearchIndex index;
+
+    private static PersonDTO person(int id, String fName, String lName, String phone, int version) {
+        return new PersonDTO(id, fName, lName, phone, version, null);
+    }
+
+    private List<Integer> ids(String query) {
+        return index.suggest(query, 10).stream().map(PersonDTO::getId).collect(Collectors.toList());
+    }
+
+    @BeforeEach
+    public void setUp() {
+        index = new PersonSearchIndex();
+        index.put(person(1, "Bob", "Hansen", "13374200", 1));
+        index.put(person(2, "Jafar", "Habibti", "69696969", 1));
+        index.put(person(3, "Johan", "Winther", "11113370", 1));
+    }
+
+    @Test
+    public void testLongWordsMatchAnywhere() {
+        assertEquals(Arrays.asList(1, 3), ids("1337"));
+        assertEquals(Arrays.asList(1), ids("ANSE"), "Expect the match to ignore case");
+        assertEquals(Arrays.asList(3), ids("ohan"));
+    }
+
+    @Test
+    public void testShortWordsMatchStart() {
+        assertEquals(Arrays.asList(2, 3), ids("j"));
+        assertEquals(Arrays.asList(1, 2), ids("ha"));
+        assertTrue(ids("an").isEmpty(), "Expect a short word only to match the start of a field");
+    }
+
+    @Test
+    public void testEveryWordMustMatch() {
+        assertEquals(Arrays.asList(3), ids("jo 1337"));
+        assertTrue(ids("bob winther").isEmpty());
+    }
+
+    @Test
+    public void testFalsePositivesAreFiltered() {
+        index.put(person(4, "Abcab", "X", "", 1));
+        //Has every trigram of "cabc", but not "cabc" itself
+        assertTrue(ids("cabc").isEmpty());
+        assertEquals(Arrays.asList(4), ids("bcab"));
+    }
+
+    @Test
+    public void testPutReplacesOldNames() {
+        index.put(person(1, "Bob", "Larsen", "13374200", 2));
+        assertTrue(ids("hansen").isEmpty());
+        assertEquals(Arrays.asList(1), ids("larsen"));
+    }
+
+    @Test
+    public void testOlderVersionIsIgnored() {
+        index.put(person(1, "Bob", "Larsen", "13374200", 3));
+        index.put(person(1, "Bob", "Olsen", "13374200", 2));
+        assertEquals(Arrays.asList(1), ids("larsen"), "Expect a write that finished late not to win");
+        assertTrue(ids("olsen").isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        index.remove(1);
+        assertEquals(Arrays.asList(3), ids("1337"));
+        assertEquals(2, index.getStats().getPersons());
+    }
+
+    @Test
+    public void testLimit() {
+        for (int id = 10; id < 30; id++) {
+            index.put(person(id, "Anna", "Berg", "" + id, 1));
+        }
+        assertEquals(5, index.suggest("anna", 5).size());
+    }
+
+    @Test
+    public void testBuildSkipsRemoved() {
+        index.startBuild();
+        index.put(person(4, "Anna", "Berg", "4444", 1));
+        index.remove(1);
+        index.put(person(1, "Bob", "Hansen", "13374200", 1));
+        index.put(person(3, "Johan", "Winther", "11113370", 1));
+        index.finishBuild(1);
+        assertEquals(Arrays.asList(3), ids("1337"), "Expect the removed person to stay out");
+        assertEquals(Arrays.asList(4), ids("anna"), "Expect the write during the build to be kept");
+    }
+
+    @Test
+    public void testPutAfterRemoveIsIgnored() {
+        index.remove(1);
+        //An edit that committed before the delete, but finished after it
+        index.put(person(1, "Bob", "Larsen", "13374200", 2));
+        assertTrue(ids("larsen").isEmpty(), "Expect the late write not to put the person back");
+        assertEquals(2, index.getStats().getPersons());
+    }
+
+    @Test
+    public void testStats() {
+        SearchIndexStatsDTO stats = index.getStats();
+        assertEquals(3, stats.getPersons());
+        assertTrue(stats.getGrams() > 0);
+        assertTrue(stats.getPostings() >= stats.getGrams());
+        assertTrue(stats.getBytesPerPerson() > 0);
+        index.clear();
+        assertEquals(0, index.getStats().getPersons());
+        assertEquals(0, index.getStats().getGrams());
+    }
+}
@@ -0,0 +1,75 @@
+package facades;
+
+import dto.PersonDTO;
+import dto.SearchIndexStatsDTO;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fills a PersonSearchIndex with generated persons and times type-ahead
+ * queries of growing length, like a user typing a name or a phone number.
+ * Checks that a suggestion takes less than 5 ms on average, and prints the
+ * estimated memory use per person. No database is needed.
+ *
+ * Tagged "benchmark" so it is skipped by a normal build. Run it with:
+ * mvn test -Pbenchmark -Dtest=PersonSuggestBenchmarkTest
+ */
+@Tag("benchmark")
+public class PersonSuggestBenchmarkTest {
+
+    private static final int PERSONS = 200000;
+    private static final int ITERATIONS = 2000;
+    private static final long MAX_MICROS_PER_SUGGEST = 5000;
+
+    private static String randomName(Random random) {
+        char[] name = new char[4 + random.nextInt(6)];
+        name[0] = (char) ('A' + random.nextInt(26));
+        for (int i = 1; i < name.length; i++) {
+            name[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(name);
+    }
+
+    @Test
+    public void suggestionsAreFastEnoughForTypeAhead() {
+        Random random = new Random(42);
+        PersonSearchIndex index = new PersonSearchIndex();
+        PersonDTO[] persons = new PersonDTO[PERSONS];
+        long start = System.nanoTime();
+        for (int i = 0; i < PERSONS; i++) {
+            persons[i] = new PersonDTO(i + 1, randomName(random), randomName(random),
+                    String.valueOf(10000000 + random.nextInt(90000000)), 1, null);
+            index.put(persons[i]);
+        }
+        long buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        SearchIndexStatsDTO stats = index.getStats();
+        System.out.println("Indexed " + stats.getPersons() + " persons in " + buildMillis + " ms, "
+                + stats.getGrams() + " grams, " + stats.getPostings() + " postings, about "
+                + stats.getEstimatedBytes() / (1024 * 1024) + " MB, " + stats.getBytesPerPerson() + " bytes per person");
+
+        String[] kinds = {"first name", "last name", "phone"};
+        for (int kind = 0; kind < kinds.length; kind++) {
+            for (int length = 1; length <= 5; length++) {
+                long found = 0;
+                long time = 0;
+                for (int i = 0; i < ITERATIONS; i++) {
+                    PersonDTO p = persons[random.nextInt(PERSONS)];
+                    String field = kind == 0 ? p.getfName() : kind == 1 ? p.getlName() : p.getPhone();
+                    //Phone fragments from the middle of the number, names from the start
+                    int from = kind == 2 ? 2 : 0;
+                    String query = field.substring(from, Math.min(field.length(), from + length));
+                    long t = System.nanoTime();
+                    found += index.suggest(query, 10).size();
+                    time += System.nanoTime() - t;
+                }
+                long micros = TimeUnit.NANOSECONDS.toMicros(time / ITERATIONS);
+                System.out.println(String.format("%-10s %d chars %8d us/op, %.1f results", kinds[kind], length, micros,
+                        (double) found / ITERATIONS));
+                assertTrue(micros < MAX_MICROS_PER_SUGGEST, "Expect a suggestion to take less than 5 ms, took " + micros + " us");
+            }
+        }
+    }
+}
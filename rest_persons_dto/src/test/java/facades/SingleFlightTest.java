@@ -0,0 +1,124 @@
+package facades;
+
+import exceptions.PersonNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.fail;
+
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    //Starts CALLERS calls for the same key, the first load blocks until release is counted down
+    private List<Future<Object>> callAll(SingleFlight flight, SingleFlight.Loader<Object, Exception> loader) throws Exception {
+        List<Future<Object>> calls = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            calls.add(pool.submit(() -> flight.run("key", loader)));
+        }
+        //Wait until all but the leader are waiting for it
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (flight.getStats().getCoalesced() < CALLERS - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        return calls;
+    }
+
+    @Test
+    public void testCoalescesConcurrentCalls() throws Exception {
+        SingleFlight flight = new SingleFlight(5000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Object result = new Object();
+        List<Future<Object>> calls = callAll(flight, () -> {
+            loads.incrementAndGet();
+            release.await();
+            return result;
+        });
+        release.countDown();
+        for (Future<Object> call : calls) {
+            assertSame(result, call.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get(), "Expect one load for all callers");
+        assertEquals(CALLERS - 1, flight.getStats().getCoalesced());
+        assertEquals(0, flight.getStats().getInFlight());
+    }
+
+    @Test
+    public void testSharesTheException() throws Exception {
+        SingleFlight flight = new SingleFlight(5000);
+        CountDownLatch release = new CountDownLatch(1);
+        PersonNotFoundException notFound = new PersonNotFoundException("No person with provided id found");
+        List<Future<Object>> calls = callAll(flight, () -> {
+            release.await();
+            throw notFound;
+        });
+        release.countDown();
+        for (Future<Object> call : calls) {
+            try {
+                call.get(5, TimeUnit.SECONDS);
+                fail("Expect every caller to get the exception");
+            } catch (ExecutionException ex) {
+                assertSame(notFound, ex.getCause());
+            }
+        }
+        assertEquals(1, flight.getStats().getLoads());
+    }
+
+    @Test
+    public void testLoadsItselfAfterTimeout() throws Exception {
+        SingleFlight flight = new SingleFlight(10);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        Future<Object> stuck = pool.submit(() -> flight.run("key", () -> {
+            loads.incrementAndGet();
+            release.await();
+            return "stuck";
+        }));
+        while (loads.get() == 0) {
+            Thread.sleep(1);
+        }
+        assertEquals("own", flight.run("key", () -> "own"));
+        assertEquals(1, flight.getStats().getTimeouts());
+        release.countDown();
+        assertEquals("stuck", stuck.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testForgetAllStartsANewLoad() throws Exception {
+        SingleFlight flight = new SingleFlight(5000);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        Future<Object> before = pool.submit(() -> flight.run("key", () -> {
+            loads.incrementAndGet();
+            release.await();
+            return "before";
+        }));
+        while (loads.get() == 0) {
+            Thread.sleep(1);
+        }
+        flight.forgetAll();
+        assertEquals("after", flight.run("key", () -> "after"), "Expect a read after a write not to join an older load");
+        release.countDown();
+        assertEquals("before", before.get(5, TimeUnit.SECONDS));
+        assertEquals(0, flight.getStats().getCoalesced());
+    }
+}
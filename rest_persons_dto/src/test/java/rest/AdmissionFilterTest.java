@@ -0,0 +1,174 @@
+package rest;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.Response;
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.junit.jupiter.api.Test;
+import utils.ConcurrencyLimiter;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+public class AdmissionFilterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    //Any method of PersonResource, the filter only looks at the class
+    private static final ResourceMethod PERSON_METHOD = Resource.from(PersonResource.class).getAllMethods().get(0);
+
+    //A request that only has what the filter uses
+    private static class Request {
+
+        final String method;
+        final String client;
+        final Map<String, Object> properties = new HashMap<>();
+        Response aborted;
+        final ContainerRequestContext context;
+
+        Request(String method, String client) {
+            this.method = method;
+            this.client = client;
+            ExtendedUriInfo uriInfo = (ExtendedUriInfo) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{ExtendedUriInfo.class}, (proxy, m, args) -> {
+                        if (m.getName().equals("getMatchedResourceMethod")) {
+                            return PERSON_METHOD;
+                        }
+                        throw new UnsupportedOperationException(m.getName());
+                    });
+            context = (ContainerRequestContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{ContainerRequestContext.class}, (proxy, m, args) -> {
+                        switch (m.getName()) {
+                            case "getUriInfo":
+                                return uriInfo;
+                            case "getMethod":
+                                return this.method;
+                            case "getHeaderString":
+                                return "X-Forwarded-For".equals(args[0]) ? this.client : null;
+                            case "abortWith":
+                                aborted = (Response) args[0];
+                                return null;
+                            case "getProperty":
+                                return properties.get((String) args[0]);
+                            case "setProperty":
+                                properties.put((String) args[0], args[1]);
+                                return null;
+                            case "removeProperty":
+                                properties.remove((String) args[0]);
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(m.getName());
+                        }
+                    });
+        }
+    }
+
+    private static Request send(AdmissionFilter filter, String method, String client) {
+        Request request = new Request(method, client);
+        filter.filter(request.context);
+        return request;
+    }
+
+    private static void answer(AdmissionFilter filter, Request request) {
+        ContainerResponseContext response = (ContainerResponseContext) Proxy.newProxyInstance(
+                AdmissionFilterTest.class.getClassLoader(), new Class<?>[]{ContainerResponseContext.class},
+                (proxy, m, args) -> {
+                    if (m.getName().equals("getStatus")) {
+                        return 200;
+                    }
+                    throw new UnsupportedOperationException(m.getName());
+                });
+        filter.filter(request.context, response);
+    }
+
+    private static AdmissionFilter limitsOnly(int readLimit, int writeLimit) {
+        return new AdmissionFilter(true,
+                new ConcurrencyLimiter("reads", readLimit, 1, 10, SECOND),
+                new ConcurrencyLimiter("writes", writeLimit, 1, 10, SECOND),
+                0, 0, 10, "X-Forwarded-For");
+    }
+
+    private static AdmissionFilter rateOnly(int maxClients) {
+        return new AdmissionFilter(false,
+                new ConcurrencyLimiter("reads", 1, 1, 10, SECOND),
+                new ConcurrencyLimiter("writes", 1, 1, 10, SECOND),
+                1, 1, maxClients, "X-Forwarded-For");
+    }
+
+    private static void assertRejected(Request request, int status) {
+        assertNotNull(request.aborted, "Expect the request to be turned away");
+        assertEquals(status, request.aborted.getStatus());
+        assertNotNull(request.aborted.getHeaderString("Retry-After"), "Expect a Retry-After");
+    }
+
+    @Test
+    public void testClientIsTheAddressTheProxyAppended() {
+        assertEquals("10.0.0.7", AdmissionFilter.clientOf("10.0.0.7"));
+        assertEquals("10.0.0.7", AdmissionFilter.clientOf("1.2.3.4, 10.0.0.7"));
+        assertEquals("10.0.0.7", AdmissionFilter.clientOf("random-value,10.0.0.7 "));
+        assertEquals("", AdmissionFilter.clientOf(null));
+    }
+
+    @Test
+    public void testReadLimitAnswers503WithRetryAfter() {
+        AdmissionFilter filter = limitsOnly(2, 2);
+        Request first = send(filter, "GET", null);
+        assertNull(first.aborted);
+        assertNull(send(filter, "HEAD", null).aborted);
+        Request third = send(filter, "GET", null);
+        assertRejected(third, 503);
+        assertEquals("1", third.aborted.getHeaderString("Retry-After"));
+        assertEquals(1, filter.stats().getReads().getRejected());
+
+        answer(filter, first);
+        assertNull(send(filter, "GET", null).aborted, "Expect the answered read to free its place");
+    }
+
+    @Test
+    public void testWriteLimitAnswers503WithRetryAfter() {
+        AdmissionFilter filter = limitsOnly(2, 1);
+        assertNull(send(filter, "POST", null).aborted);
+        assertRejected(send(filter, "PUT", null), 503);
+        assertRejected(send(filter, "DELETE", null), 503);
+        assertEquals(2, filter.stats().getWrites().getRejected());
+    }
+
+    @Test
+    public void testReadsAndWritesHaveTheirOwnLimits() {
+        AdmissionFilter filter = limitsOnly(1, 1);
+        assertNull(send(filter, "GET", null).aborted);
+        assertRejected(send(filter, "GET", null), 503);
+        assertNull(send(filter, "POST", null).aborted, "Expect full reads to leave the writes alone");
+        assertRejected(send(filter, "PATCH", null), 503);
+        assertEquals(1, filter.stats().getReads().getRejected());
+        assertEquals(1, filter.stats().getWrites().getRejected());
+    }
+
+    @Test
+    public void testClientsHaveTheirOwnBuckets() {
+        AdmissionFilter filter = rateOnly(10);
+        assertNull(send(filter, "GET", "10.0.0.1").aborted);
+        assertRejected(send(filter, "GET", "10.0.0.1"), 429);
+        assertNull(send(filter, "GET", "10.0.0.2").aborted, "Expect another client to have its own bucket");
+        assertEquals(2, filter.stats().getRateLimitClients());
+        assertEquals(1, filter.stats().getRateLimited());
+    }
+
+    @Test
+    public void testClientsShareTheOverflowBucketWhenFull() {
+        AdmissionFilter filter = rateOnly(2);
+        assertNull(send(filter, "GET", "10.0.0.1").aborted);
+        assertNull(send(filter, "GET", "10.0.0.2").aborted);
+        //Both buckets are in use, so neither is dropped to make room
+        assertNull(send(filter, "GET", "10.0.0.3").aborted);
+        assertRejected(send(filter, "GET", "10.0.0.4"), 429);
+        assertEquals(2, filter.stats().getRateLimitClients(), "Expect no buckets past the max");
+        assertRejected(send(filter, "GET", "10.0.0.1"), 429);
+    }
+}
@@ -0,0 +1,29 @@
+package rest;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+public class CompressionInterceptorTest {
+
+    @Test
+    public void testNegotiate() {
+        assertEquals("gzip", CompressionInterceptor.negotiate("gzip, deflate, br"));
+        assertEquals("gzip", CompressionInterceptor.negotiate("deflate, gzip"));
+        assertEquals("deflate", CompressionInterceptor.negotiate("deflate"));
+        assertEquals("deflate", CompressionInterceptor.negotiate("gzip;q=0.5, deflate"));
+        assertEquals("gzip", CompressionInterceptor.negotiate("x-gzip"));
+        assertEquals("gzip", CompressionInterceptor.negotiate("*"));
+    }
+
+    @Test
+    public void testNegotiateNothingAccepted() {
+        assertNull(CompressionInterceptor.negotiate(null));
+        assertNull(CompressionInterceptor.negotiate(""));
+        assertNull(CompressionInterceptor.negotiate("identity"));
+        assertNull(CompressionInterceptor.negotiate("br"));
+        assertNull(CompressionInterceptor.negotiate("gzip;q=0, identity"));
+        assertNull(CompressionInterceptor.negotiate("gzip;q=0, deflate;q=0"));
+    }
+}
@@ -0,0 +1,336 @@
+package rest;
+
+import dto.BatchItemDTO;
+import dto.BatchResultDTO;
+import dto.PersonDTO;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Sends a mix of requests to the person endpoints at a fixed rate, and
+ * records the latency of each endpoint in an HdrHistogram.
+ *
+ * The load is open-loop: request i is due at start + i / rate, whether or
+ * not the earlier requests have been answered, like users who do not wait
+ * for each other. Latency is measured from the time a request was due, not
+ * from the time it was sent, so when the server falls behind, the time the
+ * requests wait for a free client thread is counted too. Measuring from the
+ * send time would hide that wait (coordinated omission). The time from
+ * send to answer is recorded as well, as service time.
+ */
+public class LoadGenerator {
+
+    public enum Endpoint {
+        GET_PERSON("GET /person/{id}"),
+        GET_PAGE("GET /person/all"),
+        SEARCH("GET /person/search"),
+        SUGGEST("GET /person/suggest"),
+        ADD_PERSON("POST /person"),
+        EDIT_PERSON("PUT /person/{id}"),
+        DELETE_PERSON("DELETE /person/{id}");
+
+        private final String label;
+
+        Endpoint(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final String baseUrl;
+    private final Map<Endpoint, Integer> mix;
+    private final int totalWeight;
+    private final IdPool ids = new IdPool();
+    private final AtomicLong names = new AtomicLong();
+
+    private Map<Endpoint, EndpointStats> stats;
+
+    /**
+     * @param baseUrl the URL of the application, e.g. http://localhost:7780/api
+     * @param mix how often each endpoint is called, relative to the others
+     */
+    public LoadGenerator(String baseUrl, Map<Endpoint, Integer> mix) {
+        this.baseUrl = baseUrl;
+        this.mix = new EnumMap<>(mix);
+        this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("The mix must give at least one endpoint a weight");
+        }
+    }
+
+    /**
+     * Parses a mix like "GET_PERSON=60,GET_PAGE=10,ADD_PERSON=10,EDIT_PERSON=15,DELETE_PERSON=5".
+     */
+    public static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> result = new EnumMap<>(Endpoint.class);
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.trim().split("=");
+            result.put(Endpoint.valueOf(nameAndWeight[0].trim().toUpperCase()), Integer.parseInt(nameAndWeight[1].trim()));
+        }
+        return result;
+    }
+
+    //The ids the load may use, deleted persons are taken out before the DELETE is sent
+    private static class IdPool {
+
+        private int[] ids = new int[1024];
+        private int size;
+
+        synchronized void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        synchronized int random() {
+            return size == 0 ? 0 : ids[ThreadLocalRandom.current().nextInt(size)];
+        }
+
+        synchronized int takeRandom() {
+            if (size == 0) {
+                return 0;
+            }
+            int at = ThreadLocalRandom.current().nextInt(size);
+            int id = ids[at];
+            ids[at] = ids[--size];
+            return id;
+        }
+    }
+
+    private static class EndpointStats {
+
+        //Microseconds, resized as needed
+        final Histogram latency = new ConcurrentHistogram(3);
+        final Histogram serviceTime = new ConcurrentHistogram(3);
+        final AtomicLong clientErrors = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+    }
+
+    private static class Answer {
+
+        final int status;
+        final String body;
+
+        Answer(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private Answer send(String method, String path, Object body) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        con.setRequestMethod(method);
+        con.setRequestProperty("Accept", "application/json");
+        if (body != null) {
+            con.setDoOutput(true);
+            con.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = con.getOutputStream()) {
+                out.write(GsonProvider.GSON.toJson(body).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = con.getResponseCode();
+        //Read the whole body, so the connection can be kept alive and used again
+        InputStream in = status >= 400 ? con.getErrorStream() : con.getInputStream();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (in != null) {
+            try {
+                byte[] buffer = new byte[8192];
+                for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                    bytes.write(buffer, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return new Answer(status, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates persons through POST /person/batch for the load to work on.
+     */
+    public void seed(int persons) throws IOException {
+        Random random = new Random(42);
+        for (int start = 0; start < persons; start += BATCH_SIZE) {
+            List<PersonDTO> batch = new ArrayList<>();
+            for (int i = start; i < Math.min(start + BATCH_SIZE, persons); i++) {
+                batch.add(newPerson(random));
+            }
+            Answer answer = send("POST", "/person/batch", batch);
+            if (answer.status != 200) {
+                throw new IOException("Seeding failed with " + answer.status + ": " + answer.body);
+            }
+            for (BatchItemDTO item : GsonProvider.GSON.fromJson(answer.body, BatchResultDTO.class).getResults()) {
+                if (item.getPerson() != null) {
+                    ids.add(item.getPerson().getId());
+                }
+            }
+        }
+    }
+
+    private PersonDTO newPerson(Random random) {
+        long n = names.incrementAndGet();
+        return new PersonDTO("First" + n, "Last" + (char) ('a' + random.nextInt(26)) + n,
+                String.valueOf(10000000 + random.nextInt(90000000)));
+    }
+
+    private Answer call(Endpoint endpoint) throws IOException {
+        Random random = ThreadLocalRandom.current();
+        switch (endpoint) {
+            case GET_PERSON:
+                return send("GET", "/person/" + ids.random(), null);
+            case GET_PAGE:
+                return send("GET", "/person/all?limit=100&after=" + ids.random(), null);
+            case SEARCH:
+                return send("GET", "/person/search?lastName=Last" + (char) ('a' + random.nextInt(26)) + "&limit=20", null);
+            case SUGGEST:
+                return send("GET", "/person/suggest?q=" + (1000 + random.nextInt(9000)), null);
+            case ADD_PERSON:
+                Answer added = send("POST", "/person", newPerson(random));
+                if (added.status == 200) {
+                    ids.add(GsonProvider.GSON.fromJson(added.body, PersonDTO.class).getId());
+                }
+                return added;
+            case EDIT_PERSON:
+                PersonDTO edit = newPerson(random);
+                return send("PUT", "/person/" + ids.random(), edit);
+            case DELETE_PERSON:
+                return send("DELETE", "/person/" + ids.takeRandom(), null);
+            default:
+                throw new IllegalArgumentException("Unknown endpoint " + endpoint);
+        }
+    }
+
+    private Endpoint pick(Random random) {
+        int n = random.nextInt(totalWeight);
+        for (Map.Entry<Endpoint, Integer> e : mix.entrySet()) {
+            n -= e.getValue();
+            if (n < 0) {
+                return e.getKey();
+            }
+        }
+        throw new IllegalStateException("The weights do not add up");
+    }
+
+    private void request(Endpoint endpoint, long dueAt) {
+        EndpointStats s = stats.get(endpoint);
+        long sentAt = System.nanoTime();
+        try {
+            Answer answer = call(endpoint);
+            if (answer.status >= 500) {
+                s.failures.incrementAndGet();
+            } else if (answer.status >= 400) {
+                s.clientErrors.incrementAndGet();
+            }
+        } catch (IOException | RuntimeException ex) {
+            s.failures.incrementAndGet();
+        }
+        long doneAt = System.nanoTime();
+        s.latency.recordValue(TimeUnit.NANOSECONDS.toMicros(doneAt - dueAt));
+        s.serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(doneAt - sentAt));
+    }
+
+    /**
+     * Sends requests at the given rate for the given time, and waits for the
+     * last of them to be answered.
+     *
+     * @param ratePerSecond requests sent per second, over all endpoints
+     * @param seconds how long to send requests
+     * @param threads client threads, the most requests that can be waiting
+     * for an answer at once
+     * @return the latencies and counts of this run only
+     */
+    public Report run(int ratePerSecond, int seconds, int threads) throws InterruptedException {
+        stats = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : mix.keySet()) {
+            stats.put(endpoint, new EndpointStats());
+        }
+        ExecutorService clients = Executors.newFixedThreadPool(threads);
+        Random random = new Random(7);
+        long interval = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long requests = (long) ratePerSecond * seconds;
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long dueAt = start + i * interval;
+            for (long wait = dueAt - System.nanoTime(); wait > 0; wait = dueAt - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            Endpoint endpoint = pick(random);
+            clients.execute(() -> request(endpoint, dueAt));
+        }
+        clients.shutdown();
+        clients.awaitTermination(5, TimeUnit.MINUTES);
+        return new Report(stats, System.nanoTime() - start);
+    }
+
+    /**
+     * The result of a run, per endpoint and for all endpoints together.
+     */
+    public static class Report {
+
+        private final Map<Endpoint, EndpointStats> stats;
+        private final long elapsedNanos;
+
+        private Report(Map<Endpoint, EndpointStats> stats, long elapsedNanos) {
+            this.stats = stats;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRequests() {
+            return stats.values().stream().mapToLong(s -> s.latency.getTotalCount()).sum();
+        }
+
+        public long getFailures() {
+            return stats.values().stream().mapToLong(s -> s.failures.get()).sum();
+        }
+
+        public double getThroughput() {
+            return getRequests() / (elapsedNanos / 1e9);
+        }
+
+        public void print(PrintStream out) {
+            out.println(String.format("%-22s %8s %9s %9s %9s %9s %9s %9s %6s %6s", "endpoint", "requests", "req/s",
+                    "p50 ms", "p99 ms", "p999 ms", "max ms", "svc p99", "4xx", "errors"));
+            Histogram all = new Histogram(3);
+            Histogram allService = new Histogram(3);
+            long clientErrors = 0;
+            for (Map.Entry<Endpoint, EndpointStats> e : stats.entrySet()) {
+                EndpointStats s = e.getValue();
+                print(out, e.getKey().label, s.latency, s.serviceTime, s.clientErrors.get(), s.failures.get());
+                all.add(s.latency);
+                allService.add(s.serviceTime);
+                clientErrors += s.clientErrors.get();
+            }
+            print(out, "all", all, allService, clientErrors, getFailures());
+        }
+
+        private void print(PrintStream out, String label, Histogram latency, Histogram serviceTime, long clientErrors, long failures) {
+            out.println(String.format("%-22s %8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %6d %6d", label,
+                    latency.getTotalCount(), latency.getTotalCount() / (elapsedNanos / 1e9),
+                    latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+                    latency.getValueAtPercentile(99.9) / 1000.0, latency.getMaxValue() / 1000.0,
+                    serviceTime.getValueAtPercentile(99) / 1000.0, clientErrors, failures));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package rest;
+
+import java.net.URI;
+import javax.ws.rs.core.UriBuilder;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import utils.EMF_Creator;
+
+/**
+ * Runs the application in an embedded Grizzly server on the in-memory
+ * database, and puts a mix of requests on it with LoadGenerator. Prints
+ * p50/p99/p999 latency and throughput per endpoint. Needs no MySQL, so it
+ * runs on a laptop. Run it on its own, or other tests may already have
+ * created the facade on another database:
+ * mvn test -Pbenchmark -Dtest=PersonLoadTest
+ *
+ * The load is set with system properties, e.g. -Dload.rate=500:
+ * load.rate     - requests per second (default 200)
+ * load.seconds  - how long to measure (default 30)
+ * load.warmup   - seconds of load before measuring (default 10)
+ * load.threads  - client threads (default 64)
+ * load.persons  - persons created before the load starts (default 10000)
+ * load.mix      - weight per endpoint, see LoadGenerator.parseMix
+ */
+@Tag("benchmark")
+public class PersonLoadTest {
+
+    private static final int SERVER_PORT = 7780;
+    private static final URI BASE_URI = UriBuilder.fromUri("http://localhost/api").port(SERVER_PORT).build();
+    private static final String DEFAULT_MIX
+            = "GET_PERSON=50,GET_PAGE=10,SEARCH=5,SUGGEST=5,ADD_PERSON=10,EDIT_PERSON=15,DELETE_PERSON=5";
+
+    private static final int RATE = Integer.getInteger("load.rate", 200);
+    private static final int SECONDS = Integer.getInteger("load.seconds", 30);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup", 10);
+    private static final int THREADS = Integer.getInteger("load.threads", 64);
+    private static final int PERSONS = Integer.getInteger("load.persons", 10000);
+
+    private static HttpServer httpServer;
+
+    @BeforeAll
+    public static void setUpClass() {
+        //Keep a connection per client thread alive, the JDK keeps only 5 by default
+        System.setProperty("http.maxConnections", String.valueOf(THREADS));
+        EMF_Creator.startREST_TestWithMemoryDB();
+        httpServer = GrizzlyHttpServerFactory.createHttpServer(BASE_URI, ResourceConfig.forApplication(new ApplicationConfig()));
+    }
+
+    @AfterAll
+    public static void tearDownClass() {
+        EMF_Creator.endREST_TestWithMemoryDB();
+        httpServer.shutdownNow();
+    }
+
+    @Test
+    public void runMix() throws Exception {
+        String mix = System.getProperty("load.mix", DEFAULT_MIX);
+        LoadGenerator load = new LoadGenerator(BASE_URI.toString(), LoadGenerator.parseMix(mix));
+        load.seed(PERSONS);
+        System.out.println("Warming up for " + WARMUP_SECONDS + " s at " + RATE + " req/s");
+        load.run(RATE, WARMUP_SECONDS, THREADS);
+
+        System.out.println("Measuring for " + SECONDS + " s at " + RATE + " req/s, " + THREADS + " client threads, mix " + mix);
+        LoadGenerator.Report report = load.run(RATE, SECONDS, THREADS);
+        report.print(System.out);
+        assertEquals(0, report.getFailures(), "Expect no 5xx answers or broken connections");
+    }
+}
@@ -1,13 +1,20 @@
 package rest;
 
+import dto.BulkEditDTO;
+import dto.PersonBinaryCodec;
 import dto.PersonDTO;
+import dto.PersonsDTO;
 import entities.Person;
 import exceptions.PersonNotFoundException;
+import facades.PersonFacade;
 import io.restassured.RestAssured;
+import io.restassured.config.DecoderConfig;
 import static io.restassured.RestAssured.given;
 import io.restassured.parsing.Parser;
+import io.restassured.path.json.JsonPath;
 import java.io.IOException;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.List;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -132,6 +139,171 @@ public class PersonResourceTest {
 
     }
 
+    @Test
+    public void testGetPersonsPage() throws Exception {
+        int next = given()
+                .contentType("application/json")
+                .queryParam("limit", 2)
+                .when()
+                .get("/person/all").then()
+                .assertThat()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("all", hasSize(2))
+                .extract().path("next");
+
+        given()
+                .contentType("application/json")
+                .queryParam("after", next)
+                .queryParam("limit", 2)
+                .when()
+                .get("/person/all").then()
+                .assertThat()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("all", hasSize(1))
+                .body("all[0].id", greaterThan(next))
+                .body("next", nullValue());
+    }
+
+    @Test
+    public void testGetAllPersonsCompressed() throws Exception {
+        //Three persons are below the compression threshold
+        given().get("/person/all").then()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .header("Content-Encoding", nullValue());
+        PersonDTO[] many = new PersonDTO[50];
+        for (int i = 0; i < many.length; i++) {
+            many[i] = new PersonDTO("First" + i, "Last" + i, "" + (10000000 + i));
+        }
+        given().contentType("application/json").body(many).post("person/batch").then().body("created", equalTo(50));
+        //RestAssured sends Accept-Encoding for the decoders it is given, and unzips the body for us
+        for (DecoderConfig.ContentDecoder decoder : DecoderConfig.ContentDecoder.values()) {
+            given().config(RestAssured.config().decoderConfig(DecoderConfig.decoderConfig().contentDecoders(decoder)))
+                    .get("/person/all").then()
+                    .statusCode(HttpStatus.OK_200.getStatusCode())
+                    .header("Content-Encoding", decoder.name().toLowerCase())
+                    .body("all.size()", equalTo(53));
+        }
+    }
+
+    @Test
+    public void testSearchPersons() throws Exception {
+        given()
+                .queryParam("lastName", p2.getLastName().substring(0, 2))
+                .get("/person/search").then()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("all.id", hasItem(p2.getId()));
+        given()
+                .get("/person/search").then()
+                .statusCode(HttpStatus.BAD_REQUEST_400.getStatusCode());
+    }
+
+    @Test
+    public void testSuggestPersons() throws Exception {
+        PersonFacade.getPersonFacade(emf).rebuildSearchIndex();
+        given()
+                .queryParam("q", p2.getLastName().substring(1))
+                .get("/person/suggest").then()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("all.id", hasItem(p2.getId()));
+        given()
+                .get("/person/suggest").then()
+                .statusCode(HttpStatus.BAD_REQUEST_400.getStatusCode());
+        given()
+                .get("/stats/search-index").then()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("persons", greaterThanOrEqualTo(2));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        given().get("/person/" + p1.getId()).then().statusCode(HttpStatus.OK_200.getStatusCode());
+        given().get("/person/" + p2.getId()).then().statusCode(HttpStatus.OK_200.getStatusCode());
+        given().get("/no/such/path").then().statusCode(HttpStatus.NOT_FOUND_404.getStatusCode());
+        String metrics = given()
+                .get("/metrics").then()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .contentType(startsWith("text/plain"))
+                .extract().asString();
+        assertThat("Expect one route for all ids", metrics,
+                containsString("http_server_requests_total{method=\"GET\",route=\"person/{id}\",code=\"200\"}"));
+        assertThat(metrics, containsString("http_server_request_duration_seconds_bucket{method=\"GET\",route=\"person/{id}\",le=\"+Inf\"}"));
+        assertThat(metrics, containsString("http_server_response_size_bytes_count{method=\"GET\",route=\"person/{id}\"}"));
+        assertThat(metrics, containsString("route=\"unmatched\",code=\"404\""));
+        assertThat(metrics, containsString("person_cache_hits_total"));
+    }
+
+    @Test
+    public void testSqlProfile() throws Exception {
+        given().header("X-SQL-Profile", "true")
+                .get("/person/all").then()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .header("X-SQL-Profile", allOf(not(startsWith("statements=0")), containsString("; rows=3; db-ms=")));
+        given().get("/person/all").then()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .header("X-SQL-Profile", nullValue());
+        String metrics = given().get("/metrics").then().extract().asString();
+        assertThat(metrics, containsString("http_server_sql_statements_count{method=\"GET\",route=\"person/all\"}"));
+        assertThat(metrics, containsString("http_server_sql_n_plus_one_total{method=\"GET\",route=\"person/all\"} 0"));
+        assertThat(metrics, containsString("db_sql_statements_total"));
+    }
+
+    @Test
+    public void testSqlProfileBatchIsNotNPlusOne() throws Exception {
+        PersonDTO[] persons = new PersonDTO[600];
+        for (int i = 0; i < persons.length; i++) {
+            persons[i] = new PersonDTO("Batch" + i, "Person", "" + i);
+        }
+        //Many statements (id allocations and JDBC batches), but no SELECT repeated for each person
+        given().header("X-SQL-Profile", "true")
+                .contentType("application/json")
+                .body(persons)
+                .post("person/batch").then()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("created", equalTo(600))
+                .header("X-SQL-Profile", containsString("; rows=6"));
+        String metrics = given().get("/metrics").then().extract().asString();
+        assertThat(metrics, containsString("http_server_sql_n_plus_one_total{method=\"POST\",route=\"person/batch\"} 0"));
+    }
+
+    @Test
+    public void testAdmissionStats() throws Exception {
+        given().get("/stats/admission").then()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("enabled", equalTo(true))
+                .body("reads.name", equalTo("reads"))
+                .body("reads.limit", greaterThan(0))
+                .body("writes.name", equalTo("writes"));
+        String metrics = given().get("/metrics").then().extract().asString();
+        assertThat(metrics, containsString("http_admission_limit{kind=\"reads\"}"));
+        assertThat(metrics, containsString("http_admission_rejected_total{kind=\"writes\"} 0"));
+        assertThat(metrics, containsString("http_rate_limited_total 0"));
+    }
+
+    @Test
+    public void testCoalescingStats() throws Exception {
+        given().get("/person/count").then().statusCode(HttpStatus.OK_200.getStatusCode());
+        given().get("/stats/coalescing").then()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("loads", greaterThan(0))
+                .body("coalesced", greaterThanOrEqualTo(0));
+        String metrics = given().get("/metrics").then().extract().asString();
+        assertThat(metrics, containsString("person_loads_coalesced_total"));
+    }
+
+    @Test
+    public void testStreamAllPersons() throws Exception {
+        List<PersonDTO> personsDTO;
+        personsDTO = given()
+                .contentType("application/json")
+                .when()
+                .get("/person/all/stream").then()
+                .assertThat()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .extract().body().jsonPath().getList("all", PersonDTO.class);
+
+        assertThat(personsDTO, iterableWithSize(3));
+    }
+
     @Test
     public void testGetPerson() throws Exception {
         given()
@@ -142,6 +314,107 @@ public class PersonResourceTest {
                 .body("fName", equalTo(p2.getFirstName()));
     }
     
+    @Test
+    public void testGetPersonPretty() throws Exception {
+        String compact = given().get("/person/" + p2.getId()).then().extract().asString();
+        String pretty = given().queryParam("pretty", true).get("/person/" + p2.getId()).then().extract().asString();
+        assertThat(compact, not(containsString("\n")));
+        assertThat(pretty, containsString("\n"));
+        assertThat(pretty.replaceAll("\\s", ""), equalTo(compact.replaceAll("\\s", "")));
+    }
+
+    @Test
+    public void testGetPersonBinary() throws Exception {
+        byte[] body = given()
+                .accept(PersonBinaryCodec.MEDIA_TYPE)
+                .get("/person/" + p2.getId()).then()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .contentType(PersonBinaryCodec.MEDIA_TYPE)
+                .extract().asByteArray();
+        PersonDTO person = PersonBinaryCodec.personFromBytes(body);
+        assertThat(person.getId(), equalTo(p2.getId()));
+        assertThat(person.getfName(), equalTo(p2.getFirstName()));
+        //JSON is still the default
+        given().accept("*/*").get("/person/" + p2.getId()).then().contentType("application/json");
+    }
+
+    @Test
+    public void testGetAllPersonsBinary() throws Exception {
+        byte[] body = given()
+                .accept(PersonBinaryCodec.MEDIA_TYPE)
+                .queryParam("limit", 2)
+                .get("/person/all").then()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .extract().asByteArray();
+        PersonsDTO page = PersonBinaryCodec.personsFromBytes(body);
+        assertThat(page.size(), equalTo(2));
+        assertThat(page.getNext(), notNullValue());
+    }
+
+    @Test
+    public void testAddPersonBinaryBadLength() throws Exception {
+        //A first name that claims to be 2 GB long
+        byte[] body = {1, 'P', 2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        given()
+                .contentType(PersonBinaryCodec.MEDIA_TYPE)
+                .accept("application/json")
+                .body(body)
+                .post("/person").then()
+                .assertThat()
+                .statusCode(HttpStatus.BAD_REQUEST_400.getStatusCode());
+    }
+
+    @Test
+    public void testGetPersonNotModified() throws Exception {
+        String etag = given()
+                .contentType("application/json")
+                .get("/person/" + p2.getId()).then()
+                .assertThat()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .header("Last-Modified", notNullValue())
+                .header("ETag", startsWith("W/"))
+                .extract().header("ETag");
+
+        given()
+                .contentType("application/json")
+                .header("If-None-Match", etag)
+                .get("/person/" + p2.getId()).then()
+                .assertThat()
+                .statusCode(HttpStatus.NOT_MODIFIED_304.getStatusCode());
+
+        PersonDTO p2DTO = new PersonDTO(p2);
+        p2DTO.setPhone("12345678");
+        given()
+                .contentType("application/json")
+                .body(p2DTO)
+                .put("person/" + p2.getId()).then()
+                .assertThat()
+                .header("ETag", not(equalTo(etag)));
+
+        given()
+                .contentType("application/json")
+                .header("If-None-Match", etag)
+                .get("/person/" + p2.getId()).then()
+                .assertThat()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("phone", equalTo("12345678"));
+    }
+
+    @Test
+    public void testGetAllPersonsNotModified() throws Exception {
+        String etag = given()
+                .contentType("application/json")
+                .get("/person/all").then()
+                .extract().header("ETag");
+
+        given()
+                .contentType("application/json")
+                .header("If-None-Match", etag)
+                .get("/person/all").then()
+                .assertThat()
+                .statusCode(HttpStatus.NOT_MODIFIED_304.getStatusCode());
+    }
+
     @Test
     public void testGetPersonException() {
         given()
@@ -152,6 +425,21 @@ public class PersonResourceTest {
                 .body("message", equalTo("No person with provided id found"));
     }
 
+    @Test
+    public void testGetPersonExceptionCounted() {
+        for (int i = 0; i < 3; i++) {
+            given().get("/person/" + 999).then()
+                    .statusCode(HttpStatus.NOT_FOUND_404.getStatusCode())
+                    .contentType(startsWith("application/json"))
+                    .body("code", equalTo(404))
+                    .body("message", equalTo("No person with provided id found"));
+        }
+        String metrics = given().get("/metrics").then().extract().asString();
+        assertThat(metrics, containsString("http_errors_total{error=\"PersonNotFoundException\"}"));
+        assertThat(metrics, containsString("http_error_logs_suppressed_total"));
+        assertThat("Expect no stack trace", new PersonNotFoundException("x").getStackTrace().length, is(0));
+    }
+
     @Test
     public void testAddPerson() throws Exception {
         given()
@@ -179,6 +467,23 @@ public class PersonResourceTest {
                 .body("message", equalTo("First name and/or last name is missing"));
     }
 
+    @Test
+    public void testAddPersons() throws Exception {
+        given()
+                .contentType("application/json")
+                .body(new PersonDTO[]{new PersonDTO("Klaus", "Guttermand", "75634251"), new PersonDTO("Klaus", "", "75634251")})
+                .when()
+                .post("person/batch")
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("created", equalTo(1))
+                .body("failed", equalTo(1))
+                .body("results[0].person.id", notNullValue())
+                .body("results[1].status", equalTo(400))
+                .body("results[1].message", equalTo("First name and/or last name is missing"));
+    }
+
     @Test
     public void testEditPerson() throws Exception {
         PersonDTO p3DTO = new PersonDTO(p3);
@@ -196,6 +501,38 @@ public class PersonResourceTest {
                 .body("id", equalTo(p3DTO.getId()));
     }
     
+    @Test
+    public void testPatchPerson() throws Exception {
+        String etag = given()
+                .contentType("application/json")
+                .get("/person/" + p3.getId()).then()
+                .extract().header("ETag");
+
+        given()
+                .contentType("application/json")
+                .header("If-Match", etag)
+                .body("{\"phone\":\"12345678\"}")
+                .when()
+                .patch("person/" + p3.getId())
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .header("ETag", not(equalTo(etag)))
+                .body("fName", equalTo("Gurli"))
+                .body("phone", equalTo("12345678"));
+
+        //The same If-Match again is now out of date
+        given()
+                .contentType("application/json")
+                .header("If-Match", etag)
+                .body("{\"phone\":\"87654321\"}")
+                .when()
+                .patch("person/" + p3.getId())
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.CONFLICT_409.getStatusCode());
+    }
+
     @Test
     public void testEditPersonExceptionNotFound() {
         PersonDTO p3DTO = new PersonDTO(p3);
@@ -250,6 +587,121 @@ public class PersonResourceTest {
         assertThat(personsDTO, iterableWithSize(2));
     }
     
+    @Test
+    public void testDeletePersons() throws Exception {
+        given()
+                .contentType("application/json")
+                .body(new int[]{p1.getId(), p2.getId(), 999})
+                .when()
+                .post("person/batch/delete")
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("affected", containsInAnyOrder(p1.getId(), p2.getId()))
+                .body("notFound", contains(999));
+
+        given()
+                .contentType("application/json")
+                .get("/person/count").then()
+                .body("count", equalTo(1));
+    }
+
+    @Test
+    public void testEditPersons() throws Exception {
+        given()
+                .contentType("application/json")
+                .body(new BulkEditDTO(Arrays.asList(p1.getId(), 999), null, "Jensen", null))
+                .when()
+                .put("person/batch")
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("affected", contains(p1.getId()))
+                .body("notFound", contains(999));
+
+        given()
+                .contentType("application/json")
+                .get("/person/" + p1.getId()).then()
+                .body("lName", equalTo("Jensen"))
+                .body("fName", equalTo("Per"));
+    }
+
+    @Test
+    public void testGetChanges() throws Exception {
+        String since = null;
+        boolean more = true;
+        while (more) {
+            //Read the feed to its end first, the tokens are digits and dots
+            JsonPath page = given()
+                    .get("/person/changes?limit=" + PersonFacade.MAX_PAGE_SIZE + (since == null ? "" : "&since=" + since))
+                    .jsonPath();
+            since = page.getString("next");
+            more = page.getBoolean("more");
+        }
+        given()
+                .contentType("application/json")
+                .body(new PersonDTO("Per", "Larsen", "12345678"))
+                .put("person/" + p1.getId());
+        given().delete("person/" + p3.getId());
+
+        given()
+                .queryParam("since", since)
+                .get("/person/changes").then()
+                .assertThat()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("changed.id", contains(p1.getId()))
+                .body("changed[0].phone", equalTo("12345678"))
+                .body("deleted", contains(p3.getId()))
+                .body("more", equalTo(false));
+    }
+
+    @Test
+    public void testGetChangesExceptionBadToken() {
+        given()
+                .queryParam("since", "yesterday")
+                .get("/person/changes").then()
+                .assertThat()
+                .statusCode(HttpStatus.BAD_REQUEST_400.getStatusCode())
+                .body("message", equalTo("Not a valid since token"));
+    }
+
+    @Test
+    public void testAsyncGetPerson() throws Exception {
+        given()
+                .contentType("application/json")
+                .get("/async/person/" + p2.getId()).then()
+                .assertThat()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("fName", equalTo(p2.getFirstName()));
+    }
+
+    @Test
+    public void testAsyncGetPersonException() {
+        given()
+                .contentType("application/json")
+                .get("/async/person/" + 999).then()
+                .assertThat()
+                .statusCode(HttpStatus.NOT_FOUND_404.getStatusCode())
+                .body("message", equalTo("No person with provided id found"));
+    }
+
+    @Test
+    public void testAsyncAddPerson() throws Exception {
+        given()
+                .contentType("application/json")
+                .body(new PersonDTO("Klaus", "Guttermand", "75634251"))
+                .when()
+                .post("async/person")
+                .then()
+                .body("fName", equalTo("Klaus"))
+                .body("id", notNullValue());
+
+        given()
+                .contentType("application/json")
+                .get("/async/person/count").then()
+                .body("count", equalTo(4));
+    }
+
     @Test
     public void testDeletePersonException() {
         PersonDTO p1DTO = new PersonDTO(p1);
@@ -0,0 +1,89 @@
+package rest;
+
+import dto.ReadinessDTO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.UriBuilder;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import utils.EMF_Creator;
+
+/**
+ * Measures how long the server takes from start until /api/health/ready
+ * answers 200, and how long the first and second requests to the database
+ * take after that. Run it on its own, in a fresh JVM, or the persistence
+ * unit is already deployed by other tests:
+ * mvn test -Pbenchmark -Dtest=StartupLatencyTest
+ *
+ * Compare with WARMUP_ROUNDS=0 WARMUP_CONNECTIONS=0 to see what the warm-up
+ * saves the first request.
+ */
+@Tag("benchmark")
+public class StartupLatencyTest {
+
+    private static final int SERVER_PORT = 7779;
+    private static final URI BASE_URI = UriBuilder.fromUri("http://localhost/api").port(SERVER_PORT).build();
+    private static final long READY_TIMEOUT_MS = 60000;
+
+    private static HttpServer httpServer;
+
+    @AfterAll
+    public static void closeTestServer() {
+        EMF_Creator.endREST_TestWithDB();
+        if (httpServer != null) {
+            httpServer.shutdownNow();
+        }
+    }
+
+    private static int get(String path) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) new URL(BASE_URI + path).openConnection();
+        try (InputStream in = con.getResponseCode() < 400 ? con.getInputStream() : con.getErrorStream()) {
+            while (in != null && in.read() != -1) {
+            }
+        }
+        return con.getResponseCode();
+    }
+
+    private static long millisSince(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Test
+    public void measureStartupAndFirstRequest() throws Exception {
+        EMF_Creator.startREST_TestWithDB();
+        long start = System.nanoTime();
+        httpServer = GrizzlyHttpServerFactory.createHttpServer(BASE_URI, ResourceConfig.forApplication(new ApplicationConfig()));
+        long listening = millisSince(start);
+
+        int status = get("/health/ready");
+        while (status != 200 && millisSince(start) < READY_TIMEOUT_MS) {
+            Thread.sleep(10);
+            status = get("/health/ready");
+        }
+        long ready = millisSince(start);
+        assertEquals(200, status, "Not ready after " + READY_TIMEOUT_MS + " ms");
+
+        long first = System.nanoTime();
+        assertEquals(200, get("/person/count"));
+        long firstMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - first);
+        long second = System.nanoTime();
+        assertEquals(200, get("/person/count"));
+        long secondMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - second);
+
+        ReadinessDTO readiness = StartupListener.getReadiness();
+        System.out.printf("Listening after %d ms, ready after %d ms (deploy %d ms, warm-up %d ms)%n",
+                listening, ready, readiness.getDeployMillis(), readiness.getWarmupMillis());
+        System.out.printf("First request %d us, second request %d us%n", firstMicros, secondMicros);
+        assertTrue(ready >= listening);
+    }
+}
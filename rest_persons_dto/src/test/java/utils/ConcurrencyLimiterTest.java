@@ -0,0 +1,68 @@
+package utils;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class ConcurrencyLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testRejectsAtTheLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 2, 1, 10, SECOND);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        limiter.release(System.nanoTime(), false);
+        assertTrue(limiter.tryAcquire());
+        assertEquals(1, limiter.getStats().getRejected());
+    }
+
+    @Test
+    public void testGrowsWhileBusyAndFast() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 4, 1, 10, SECOND);
+        for (int i = 0; i < 100; i++) {
+            while (limiter.tryAcquire()) {
+            }
+            while (limiter.getStats().getInFlight() > 0) {
+                limiter.release(System.nanoTime(), false);
+            }
+        }
+        assertEquals(10, limiter.getLimit(), "Expect the limit to have grown to the max");
+    }
+
+    @Test
+    public void testCutsOncePerBurstOfOverload() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 10, 1, 10, SECOND);
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        for (int i = 0; i < 5; i++) {
+            limiter.release(start, true);
+        }
+        assertEquals(9, limiter.getLimit(), "Expect requests let in before the cut not to cut again");
+        assertEquals(1, limiter.getStats().getDecreases());
+    }
+
+    @Test
+    public void testCutsOnSlowAnswer() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 10, 1, 10, TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(limiter.tryAcquire());
+        limiter.release(System.nanoTime() - SECOND, false);
+        assertEquals(9, limiter.getLimit(), "Expect a slow answer to cut the limit");
+    }
+
+    @Test
+    public void testTokenBucket() {
+        TokenBucket bucket = new TokenBucket(1, 2);
+        assertEquals(0, bucket.tryTake());
+        assertEquals(0, bucket.tryTake());
+        assertTrue(bucket.tryTake() > 0, "Expect the burst to be used up");
+        assertFalse(bucket.isFull());
+    }
+}